@@ -0,0 +1,174 @@
+package ru.gostmaster.benchmark;
+
+import org.bouncycastle.cms.SignerInformation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.scheduler.Schedulers;
+import ru.gostmaster.cache.CertificateCache;
+import ru.gostmaster.cache.ChainValidationCache;
+import ru.gostmaster.cache.CrlCache;
+import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.parser.CMSDataParser;
+import ru.gostmaster.parser.CertificateParser;
+import ru.gostmaster.parser.CrlParser;
+import ru.gostmaster.revocation.RevocationIndexFiles;
+import ru.gostmaster.revocation.RevocationIndexRegistry;
+import ru.gostmaster.storage.CRLStorage;
+import ru.gostmaster.storage.CertificateStorage;
+import ru.gostmaster.verification.VerificationContext;
+import ru.gostmaster.verification.data.CheckResult;
+import ru.gostmaster.verification.impl.chain.CertificateChainBuilder;
+import ru.gostmaster.verification.impl.checks.CertificateChainCheck;
+import ru.gostmaster.verification.impl.checks.CertificateChainCrlCheck;
+import ru.gostmaster.verification.impl.checks.CertificatePolicyCheck;
+import ru.gostmaster.verification.impl.checks.CheckContentCheck;
+import ru.gostmaster.verification.impl.checks.KeyUsageCheck;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки проверок. Каждый вызов получает новый контекст проверки, как отдельный запрос.
+ * Хранилища заменены данными в памяти, поэтому в замер не попадает MongoDB.
+ * Варианты "Cold" сбрасывают кэш проверенных цепочек перед вызовом.
+ *
+ * @author maksimgurin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckBenchmark {
+
+    private static final long CACHE_WEIGHT = 64L * 1024 * 1024;
+    private static final long CHAIN_CACHE_SIZE = 1000L;
+    private static final String CRL_URL = "http://benchmark.local/root.crl";
+
+    private GostFixtures fixtures;
+    private SignerInformation signerInformation;
+
+    private CheckContentCheck checkContentCheck;
+    private KeyUsageCheck keyUsageCheck;
+    private CertificatePolicyCheck certificatePolicyCheck;
+    private CertificateChainCheck certificateChainCheck;
+    private CertificateChainCrlCheck indexedCrlCheck;
+    private ChainValidationCache indexedChainCache;
+    private CertificateChainCrlCheck fullCrlCheck;
+    private ChainValidationCache fullCrlChainCache;
+
+    /**
+     * Подготовка данных и проверок.
+     *
+     * @throws Exception ошибка подготовки
+     */
+    @Setup
+    public void setUp() throws Exception {
+        fixtures = GostFixtures.get();
+        signerInformation = CMSDataParser.parse(fixtures.getData(), fixtures.getSignatureDer())
+            .getSignerInfos().getSigners().iterator().next();
+
+        Certificate root = new CertificateParser().parseRawDataCertificate(fixtures.getRootCertificate().getEncoded());
+        root.setTrusted(true);
+        CertificateStorage certificateStorage = FixtureStorages.certificateStorage(Collections.singletonList(root));
+        Crl crl = new CrlParser().parseRawDataCrl(fixtures.getSmallCrl(), CRL_URL);
+        List<Crl> crls = Collections.singletonList(crl);
+        CRLStorage crlStorage = FixtureStorages.crlStorage(crls);
+
+        checkContentCheck = new CheckContentCheck();
+        keyUsageCheck = new KeyUsageCheck();
+        certificatePolicyCheck = new CertificatePolicyCheck();
+
+        certificateChainCheck = new CertificateChainCheck();
+        certificateChainCheck.setCertificateChainBuilder(newChainBuilder(certificateStorage, new ChainValidationCache(
+            CHAIN_CACHE_SIZE)));
+
+        indexedChainCache = new ChainValidationCache(CHAIN_CACHE_SIZE);
+        RevocationIndexRegistry registry = new RevocationIndexRegistry();
+        registry.setCertificateStorage(certificateStorage);
+        registry.setCrlStorage(crlStorage);
+        registry.setCertificateCache(new CertificateCache(CACHE_WEIGHT));
+        registry.setCrlCache(new CrlCache(CACHE_WEIGHT));
+        registry.setIndexFiles(new RevocationIndexFiles(""));
+        registry.index(crl).block();
+        indexedCrlCheck = newCrlCheck(certificateStorage, crlStorage, registry, indexedChainCache);
+
+        fullCrlChainCache = new ChainValidationCache(CHAIN_CACHE_SIZE);
+        fullCrlCheck = newCrlCheck(certificateStorage, crlStorage, new RevocationIndexRegistry(), fullCrlChainCache);
+    }
+
+    @Benchmark
+    public CheckResult checkContent() {
+        return checkContentCheck.verify(newContext()).block();
+    }
+
+    @Benchmark
+    public CheckResult keyUsage() {
+        return keyUsageCheck.verify(newContext()).block();
+    }
+
+    @Benchmark
+    public CheckResult certificatePolicy() {
+        return certificatePolicyCheck.verify(newContext()).block();
+    }
+
+    @Benchmark
+    public CheckResult certificateChain() {
+        return certificateChainCheck.verify(newContext()).block();
+    }
+
+    @Benchmark
+    public CheckResult certificateChainCrlCached() {
+        return indexedCrlCheck.verify(newContext()).block();
+    }
+
+    @Benchmark
+    public CheckResult certificateChainCrlIndexCold() {
+        indexedChainCache.invalidateAll();
+        return indexedCrlCheck.verify(newContext()).block();
+    }
+
+    @Benchmark
+    public CheckResult certificateChainCrlFullCold() {
+        fullCrlChainCache.invalidateAll();
+        return fullCrlCheck.verify(newContext()).block();
+    }
+
+    private VerificationContext newContext() {
+        return new VerificationContext(signerInformation, fixtures.getSignerCertificate());
+    }
+
+    private static CertificateChainBuilder newChainBuilder(CertificateStorage certificateStorage,
+                                                           ChainValidationCache chainValidationCache) {
+        CertificateChainBuilder builder = new CertificateChainBuilder();
+        builder.setCertificateStorage(certificateStorage);
+        builder.setCertificateCache(new CertificateCache(CACHE_WEIGHT));
+        builder.setChainValidationCache(chainValidationCache);
+        builder.setVerificationScheduler(Schedulers.immediate());
+        return builder;
+    }
+
+    private static CertificateChainCrlCheck newCrlCheck(CertificateStorage certificateStorage, CRLStorage crlStorage,
+                                                        RevocationIndexRegistry registry,
+                                                        ChainValidationCache chainValidationCache) {
+        CertificateChainCrlCheck check = new CertificateChainCrlCheck();
+        check.setCrlStorage(crlStorage);
+        check.setCrlCache(new CrlCache(CACHE_WEIGHT));
+        check.setRevocationIndexRegistry(registry);
+        check.setCertificateChainBuilder(newChainBuilder(certificateStorage, chainValidationCache));
+        check.setChainValidationCache(chainValidationCache);
+        check.setVerificationScheduler(Schedulers.immediate());
+        return check;
+    }
+}
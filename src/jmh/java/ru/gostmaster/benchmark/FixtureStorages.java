@@ -0,0 +1,86 @@
+package ru.gostmaster.benchmark;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.storage.CRLStorage;
+import ru.gostmaster.storage.CertificateStorage;
+
+import java.util.List;
+
+/**
+ * Хранилища для бенчмарков: отдают заранее заданные данные без обращения к MongoDB.
+ *
+ * @author maksimgurin
+ */
+public final class FixtureStorages {
+
+    private FixtureStorages() {
+    }
+
+    /**
+     * Хранилище сертификатов, которое на любой ключ отдает одну и ту же цепочку.
+     *
+     * @param chain цепочка
+     * @return хранилище
+     */
+    public static CertificateStorage certificateStorage(List<Certificate> chain) {
+        return new CertificateStorage() {
+            @Override
+            public Mono<List<Certificate>> getCertificateChainForLeafKey(String subjectKey) {
+                return Mono.just(chain);
+            }
+
+            @Override
+            public Mono<Void> saveAllCertificates(Flux<Certificate> certificateFlux) {
+                return certificateFlux.then();
+            }
+
+            @Override
+            public Mono<Void> deleteAllTrusted() {
+                return Mono.empty();
+            }
+
+            @Override
+            public Mono<Void> deleteAllIntermediate() {
+                return Mono.empty();
+            }
+
+            @Override
+            public Flux<Certificate> getAll() {
+                return Flux.fromIterable(chain);
+            }
+        };
+    }
+
+    /**
+     * Хранилище CRL, которое на любой набор издателей отдает одни и те же списки.
+     *
+     * @param crls списки
+     * @return хранилище
+     */
+    public static CRLStorage crlStorage(List<Crl> crls) {
+        return new CRLStorage() {
+            @Override
+            public Flux<Crl> getAllByIssuerKeys(List<String> issuerKeys) {
+                return Flux.fromIterable(crls);
+            }
+
+            @Override
+            public Flux<Crl> getAll() {
+                return Flux.fromIterable(crls);
+            }
+
+            @Override
+            public Mono<Void> deleteAllCrls() {
+                return Mono.empty();
+            }
+
+            @Override
+            public Mono<Crl> save(Crl crl) {
+                return Mono.just(crl);
+            }
+        };
+    }
+}
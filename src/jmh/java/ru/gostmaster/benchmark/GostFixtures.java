@@ -0,0 +1,222 @@
+package ru.gostmaster.benchmark;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.CertificatePolicies;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.asn1.x509.PolicyInformation;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Фиксированные данные для бенчмарков: корневой сертификат, сертификат подписанта, CRL и открепленная подпись
+ * ГОСТ Р 34.10-2012 (256 бит). Данные генерируются детерминированно: ключи и подписи - от генератора с постоянным
+ * зерном, даты постоянные, поэтому результаты разных запусков сравнимы.
+ *
+ * @author maksimgurin
+ */
+public final class GostFixtures {
+
+    /**
+     * Количество записей в "большом" CRL.
+     */
+    public static final int HUGE_CRL_SIZE = 100_000;
+
+    /**
+     * Количество записей в "маленьком" CRL.
+     */
+    public static final int SMALL_CRL_SIZE = 10;
+
+    /**
+     * Размер подписанного файла.
+     */
+    public static final int DATA_SIZE = 1024 * 1024;
+
+    private static final String KEY_ALGORITHM = "ECGOST3410-2012";
+    private static final String CURVE = "Tc26-Gost-3410-12-256-paramSetA";
+    private static final String SIGNATURE_ALGORITHM = "GOST3411-2012-256WITHECGOST3410-2012-256";
+    private static final long SEED = 20200601L;
+    private static final Date NOT_BEFORE = new Date(1577836800000L);
+    private static final Date NOT_AFTER = new Date(2208988800000L);
+    private static final Date THIS_UPDATE = new Date(1590969600000L);
+    private static final Date NEXT_UPDATE = new Date(2177452800000L);
+    private static final String KS1_POLICY = "1.2.643.100.113.1";
+    private static final String KS2_POLICY = "1.2.643.100.113.2";
+
+    private static GostFixtures instance;
+
+    private final SecureRandom random;
+    private final PrivateKey signerKey;
+    private final X509CertificateHolder rootCertificate;
+    private final X509CertificateHolder signerCertificate;
+    private final byte[] data;
+    private final byte[] signatureDer;
+    private final byte[] signaturePem;
+    private final byte[] smallCrl;
+    private final byte[] hugeCrl;
+
+    private GostFixtures() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        random = SecureRandom.getInstance("SHA1PRNG");
+        random.setSeed(SEED);
+
+        KeyPair rootKeys = generateKeyPair(random);
+        KeyPair signerKeys = generateKeyPair(random);
+        signerKey = signerKeys.getPrivate();
+        JcaX509ExtensionUtils extensionUtils = new JcaX509ExtensionUtils();
+
+        X500Name rootName = new X500Name("CN=Benchmark Root CA,O=gostmaster,C=RU");
+        rootCertificate = new JcaX509v3CertificateBuilder(rootName, BigInteger.ONE, NOT_BEFORE, NOT_AFTER, rootName,
+            rootKeys.getPublic())
+            .addExtension(Extension.basicConstraints, true, new BasicConstraints(true))
+            .addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.keyCertSign | KeyUsage.cRLSign))
+            .addExtension(Extension.subjectKeyIdentifier, false, extensionUtils.createSubjectKeyIdentifier(rootKeys.getPublic()))
+            .build(signer(rootKeys.getPrivate(), random));
+
+        X500Name signerName = new X500Name("CN=Benchmark Signer,O=gostmaster,C=RU");
+        signerCertificate = new JcaX509v3CertificateBuilder(rootName, BigInteger.valueOf(2), NOT_BEFORE, NOT_AFTER,
+            signerName, signerKeys.getPublic())
+            .addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.digitalSignature | KeyUsage.nonRepudiation))
+            .addExtension(Extension.subjectKeyIdentifier, false,
+                extensionUtils.createSubjectKeyIdentifier(signerKeys.getPublic()))
+            .addExtension(Extension.authorityKeyIdentifier, false,
+                extensionUtils.createAuthorityKeyIdentifier(rootCertificate))
+            .addExtension(Extension.certificatePolicies, false, new CertificatePolicies(new PolicyInformation[] {
+                new PolicyInformation(new ASN1ObjectIdentifier(KS1_POLICY)),
+                new PolicyInformation(new ASN1ObjectIdentifier(KS2_POLICY))
+            }))
+            .build(signer(rootKeys.getPrivate(), random));
+
+        data = new byte[DATA_SIZE];
+        new Random(SEED).nextBytes(data);
+
+        signatureDer = sign(data);
+        signaturePem = toPem("CMS", signatureDer).getBytes(StandardCharsets.US_ASCII);
+
+        smallCrl = buildCrl(rootName, rootKeys.getPrivate(), extensionUtils, SMALL_CRL_SIZE, random);
+        hugeCrl = buildCrl(rootName, rootKeys.getPrivate(), extensionUtils, HUGE_CRL_SIZE, random);
+    }
+
+    /**
+     * Получить данные. Генерируются один раз на процесс.
+     *
+     * @return данные
+     * @throws Exception ошибка генерации
+     */
+    public static synchronized GostFixtures get() throws Exception {
+        if (instance == null) {
+            instance = new GostFixtures();
+        }
+        return instance;
+    }
+
+    /**
+     * Подписать данные открепленной подписью от имени сертификата подписанта.
+     *
+     * @param content данные
+     * @return подпись в DER
+     * @throws Exception ошибка подписи
+     */
+    public synchronized byte[] sign(byte[] content) throws Exception {
+        CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+        generator.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(new JcaDigestCalculatorProviderBuilder()
+            .setProvider(BouncyCastleProvider.PROVIDER_NAME).build())
+            .build(signer(signerKey, random), signerCertificate));
+        generator.addCertificates(new JcaCertStore(Arrays.asList(signerCertificate)));
+        return generator.generate(new CMSProcessableByteArray(content), false).getEncoded();
+    }
+
+    public X509CertificateHolder getRootCertificate() {
+        return rootCertificate;
+    }
+
+    public X509CertificateHolder getSignerCertificate() {
+        return signerCertificate;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public byte[] getSignatureDer() {
+        return signatureDer;
+    }
+
+    public byte[] getSignaturePem() {
+        return signaturePem;
+    }
+
+    public byte[] getSmallCrl() {
+        return smallCrl;
+    }
+
+    public byte[] getHugeCrl() {
+        return hugeCrl;
+    }
+
+    private byte[] buildCrl(X500Name issuer, PrivateKey key, JcaX509ExtensionUtils extensionUtils, int size,
+                            SecureRandom random) throws Exception {
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(issuer, THIS_UPDATE);
+        builder.setNextUpdate(NEXT_UPDATE);
+        builder.addExtension(Extension.authorityKeyIdentifier, false, extensionUtils.createAuthorityKeyIdentifier(rootCertificate));
+        // серийные номера отозванных не пересекаются с сертификатом подписанта (2)
+        for (int i = 0; i < size; i++) {
+            builder.addCRLEntry(BigInteger.valueOf(1000L + i), THIS_UPDATE, CRLReason.keyCompromise);
+        }
+        X509CRLHolder crl = builder.build(signer(key, random));
+        return crl.getEncoded();
+    }
+
+    private static KeyPair generateKeyPair(SecureRandom random) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(KEY_ALGORITHM, BouncyCastleProvider.PROVIDER_NAME);
+        generator.initialize(new ECGenParameterSpec(CURVE), random);
+        return generator.generateKeyPair();
+    }
+
+    private static ContentSigner signer(PrivateKey key, SecureRandom random) throws Exception {
+        return new JcaContentSignerBuilder(SIGNATURE_ALGORITHM)
+            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+            .setSecureRandom(random)
+            .build(key);
+    }
+
+    private static String toPem(String type, byte[] der) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (PemWriter pemWriter = new PemWriter(writer)) {
+            pemWriter.writeObject(new PemObject(type, der));
+        }
+        return writer.toString();
+    }
+}
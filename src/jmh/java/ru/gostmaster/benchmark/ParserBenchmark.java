@@ -0,0 +1,91 @@
+package ru.gostmaster.benchmark;
+
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.parser.CMSDataParser;
+import ru.gostmaster.parser.CertificateParser;
+import ru.gostmaster.parser.CrlParser;
+import ru.gostmaster.util.BouncyCastleUtils;
+import ru.gostmaster.verification.data.SignatureCertificateInfo;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки разбора подписи, сертификатов и CRL.
+ *
+ * @author maksimgurin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final String CRL_URL = "http://benchmark.local/root.crl";
+
+    private GostFixtures fixtures;
+    private CertificateParser certificateParser;
+    private CrlParser crlParser;
+    private byte[] signerCertificate;
+    private SignerInformation signerInformation;
+
+    /**
+     * Подготовка данных.
+     *
+     * @throws Exception ошибка подготовки
+     */
+    @Setup
+    public void setUp() throws Exception {
+        fixtures = GostFixtures.get();
+        certificateParser = new CertificateParser();
+        crlParser = new CrlParser();
+        signerCertificate = fixtures.getSignerCertificate().getEncoded();
+        signerInformation = CMSDataParser.parse(fixtures.getData(), fixtures.getSignatureDer())
+            .getSignerInfos().getSigners().iterator().next();
+    }
+
+    @Benchmark
+    public CMSSignedData cmsParseDer() {
+        return CMSDataParser.parse(fixtures.getData(), fixtures.getSignatureDer());
+    }
+
+    @Benchmark
+    public CMSSignedData cmsParsePem() {
+        return CMSDataParser.parse(fixtures.getData(), fixtures.getSignaturePem());
+    }
+
+    @Benchmark
+    public Certificate parseCertificate() {
+        return certificateParser.parseRawDataCertificate(signerCertificate);
+    }
+
+    @Benchmark
+    public Crl parseSmallCrl() {
+        return crlParser.parseRawDataCrl(fixtures.getSmallCrl(), CRL_URL);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Crl parseHugeCrl() {
+        return crlParser.parseRawDataCrl(fixtures.getHugeCrl(), CRL_URL);
+    }
+
+    @Benchmark
+    public SignatureCertificateInfo buildSignatureCertificateInfo() {
+        return BouncyCastleUtils.buildSignatureCertificateInfo(signerInformation, fixtures.getSignerCertificate());
+    }
+}
@@ -0,0 +1,123 @@
+package ru.gostmaster.loadtest;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import ru.gostmaster.verification.data.VerificationResult;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Генератор нагрузки на POST /signature-verification/verify. Пары из набора отправляются по кругу.
+ * <p>
+ * Без заданной интенсивности работает как закрытая модель: {@code concurrency} клиентов отправляют
+ * следующий запрос сразу после ответа. С интенсивностью {@code rate} запросы планируются через равные
+ * интервалы (открытая модель), а {@code concurrency} ограничивает число одновременно открытых запросов.
+ *
+ * @author maksimgurin
+ */
+public final class LoadGenerator {
+
+    private static final String VERIFY_PATH = "/signature-verification/verify";
+    private static final long NANOS_IN_SECOND = 1_000_000_000L;
+
+    private final WebClient webClient;
+    private final List<MultiValueMap<String, HttpEntity<?>>> bodies;
+    private final int concurrency;
+    private final int rate;
+
+    /**
+     * Конструктор.
+     *
+     * @param port        порт приложения
+     * @param corpus      набор пар файл/подпись
+     * @param concurrency максимум одновременных запросов
+     * @param rate        запросов в секунду, 0 - без ограничения
+     */
+    public LoadGenerator(int port, LoadTestCorpus corpus, int concurrency, int rate) {
+        this.webClient = WebClient.builder()
+            .baseUrl("http://localhost:" + port)
+            .clientConnector(new ReactorClientHttpConnector(HttpClient.create(
+                ConnectionProvider.fixed("loadtest", concurrency))))
+            .build();
+        this.bodies = corpus.getSamples().stream().map(LoadGenerator::body).collect(Collectors.toList());
+        this.concurrency = concurrency;
+        this.rate = rate;
+    }
+
+    /**
+     * Проверить каждую пару один раз и получить результаты, чтобы убедиться, что набор проверяется.
+     *
+     * @return результаты в порядке набора
+     */
+    public Mono<List<VerificationResult>> probe() {
+        return Flux.fromIterable(bodies)
+            .concatMap(body -> webClient.post()
+                .uri(VERIFY_PATH)
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(body))
+                .exchange()
+                .flatMap(response -> response.bodyToMono(VerificationResult.class)))
+            .collectList();
+    }
+
+    /**
+     * Выполнить прогон.
+     *
+     * @param requests число запросов
+     * @return результаты прогона
+     */
+    public Mono<LoadReport> run(int requests) {
+        return Mono.defer(() -> {
+            LoadReport report = new LoadReport(requests);
+            report.start();
+            long begin = System.nanoTime();
+            Flux<Long> schedule;
+            long period = 0;
+            if (rate > 0) {
+                period = NANOS_IN_SECOND / rate;
+                schedule = Flux.interval(Duration.ofNanos(period)).onBackpressureBuffer().take(requests);
+            } else {
+                schedule = Flux.range(0, requests).map(Long::valueOf);
+            }
+            long interval = period;
+            return schedule
+                .flatMap(i -> send(i, report, interval > 0 ? begin + (i + 1) * interval : 0), concurrency)
+                .then(Mono.fromRunnable(report::stop))
+                .thenReturn(report);
+        });
+    }
+
+    private Mono<Void> send(long index, LoadReport report, long plannedNanos) {
+        return Mono.defer(() -> {
+            long startNanos = plannedNanos > 0 ? plannedNanos : System.nanoTime();
+            return webClient.post()
+                .uri(VERIFY_PATH)
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(bodies.get((int) (index % bodies.size()))))
+                .exchange()
+                .flatMap(response -> response.releaseBody().thenReturn(response.rawStatusCode()))
+                .onErrorReturn(0)
+                .doOnNext(status -> report.record(status, System.nanoTime() - startNanos))
+                .then();
+        });
+    }
+
+    private static MultiValueMap<String, HttpEntity<?>> body(LoadTestCorpus.Sample sample) {
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("data", new ByteArrayResource(sample.getData())).filename(sample.getName());
+        builder.part("sig", new ByteArrayResource(sample.getSignature())).filename(sample.getName() + ".sig");
+        return builder.build();
+    }
+}
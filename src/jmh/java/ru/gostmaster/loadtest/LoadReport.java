@@ -0,0 +1,161 @@
+package ru.gostmaster.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сбор и вывод результатов прогона нагрузочного теста: пропускная способность, процентили задержки,
+ * ответы по кодам и скорость выделения памяти. Задержка считается от запланированного времени отправки,
+ * поэтому при заданной интенсивности в нее входит и ожидание в очереди генератора.
+ * <p>
+ * Выделение памяти считается по всем потокам JVM ({@code com.sun.management.ThreadMXBean}),
+ * то есть включает и клиента нагрузки, который работает в том же процессе.
+ *
+ * @author maksimgurin
+ */
+public final class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final double NANOS_IN_MILLI = 1_000_000d;
+    private static final double NANOS_IN_SECOND = 1_000_000_000d;
+    private static final double BYTES_IN_MB = 1024d * 1024d;
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_UNAVAILABLE = 503;
+
+    private final long[] latencies;
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final LongAdder ok = new LongAdder();
+    private final LongAdder badRequest = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private JvmSnapshot start;
+    private JvmSnapshot end;
+
+    LoadReport(int requests) {
+        this.latencies = new long[requests];
+    }
+
+    void start() {
+        start = JvmSnapshot.take();
+    }
+
+    void stop() {
+        end = JvmSnapshot.take();
+    }
+
+    /**
+     * Учесть ответ.
+     *
+     * @param status       код ответа HTTP или 0, если ответ не получен
+     * @param latencyNanos задержка
+     */
+    void record(int status, long latencyNanos) {
+        int i = recorded.getAndIncrement();
+        if (i < latencies.length) {
+            latencies[i] = latencyNanos;
+        }
+        if (status == HTTP_OK) {
+            ok.increment();
+        } else if (status == HTTP_BAD_REQUEST) {
+            badRequest.increment();
+        } else if (status == HTTP_UNAVAILABLE) {
+            rejected.increment();
+        } else {
+            failed.increment();
+        }
+    }
+
+    /**
+     * Сформировать отчет.
+     *
+     * @param title заголовок
+     * @return текст отчета
+     */
+    String format(String title) {
+        int count = Math.min(recorded.get(), latencies.length);
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double seconds = (end.nanos - start.nanos) / NANOS_IN_SECOND;
+        long allocated = end.allocatedBytes - start.allocatedBytes;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "=== %s ===%n", title));
+        sb.append(String.format(Locale.ROOT, "requests:     %d in %.2f s%n", count, seconds));
+        sb.append(String.format(Locale.ROOT, "throughput:   %.1f req/s%n", count / seconds));
+        sb.append(String.format(Locale.ROOT, "responses:    200=%d 400=%d 503=%d other/error=%d%n",
+            ok.sum(), badRequest.sum(), rejected.sum(), failed.sum()));
+        if (count > 0) {
+            sb.append("latency, ms: ");
+            for (double percentile : PERCENTILES) {
+                sb.append(String.format(Locale.ROOT, " p%s=%.2f", trim(percentile),
+                    sorted[percentileIndex(percentile, count)] / NANOS_IN_MILLI));
+            }
+            sb.append(String.format(Locale.ROOT, " max=%.2f%n", sorted[count - 1] / NANOS_IN_MILLI));
+        }
+        if (start.allocatedBytes >= 0) {
+            sb.append(String.format(Locale.ROOT, "allocation:   %.1f MB/s, %.1f KB/request%n",
+                allocated / BYTES_IN_MB / seconds, count == 0 ? 0d : allocated / 1024d / count));
+        }
+        sb.append(String.format(Locale.ROOT, "gc:           %d collections, %d ms%n",
+            end.gcCount - start.gcCount, end.gcMillis - start.gcMillis));
+        return sb.toString();
+    }
+
+    private static int percentileIndex(double percentile, int count) {
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return Math.max(0, Math.min(count - 1, index));
+    }
+
+    private static String trim(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    /**
+     * Снимок счетчиков JVM.
+     *
+     * @author maksimgurin
+     */
+    private static final class JvmSnapshot {
+        private final long nanos;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcMillis;
+
+        private JvmSnapshot(long nanos, long allocatedBytes, long gcCount, long gcMillis) {
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        static JvmSnapshot take() {
+            long gcCount = 0;
+            long gcMillis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(0, gc.getCollectionCount());
+                gcMillis += Math.max(0, gc.getCollectionTime());
+            }
+            return new JvmSnapshot(System.nanoTime(), allocatedBytes(), gcCount, gcMillis);
+        }
+
+        private static long allocatedBytes() {
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            long res = -1;
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+                res = 0;
+                // потоки, завершившиеся во время прогона, не учитываются; пулы Netty и проверки живут весь прогон
+                for (long bytes : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+                    res += Math.max(0, bytes);
+                }
+            }
+            return res;
+        }
+    }
+}
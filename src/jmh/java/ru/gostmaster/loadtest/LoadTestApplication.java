@@ -0,0 +1,138 @@
+package ru.gostmaster.loadtest;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.core.env.Environment;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import reactor.core.publisher.Flux;
+import ru.gostmaster.Main;
+import ru.gostmaster.storage.CRLStorage;
+import ru.gostmaster.storage.CertificateStorage;
+import ru.gostmaster.verification.data.VerificationResult;
+
+import java.nio.file.Paths;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Нагрузочный тест проверки подписи. Поднимает приложение целиком (WebFlux, проверки, кэши, допуск запросов)
+ * на случайном порту с хранилищами в памяти (storage.type=memory), заполненными сертификатами и CRL из набора.
+ * Автоконфигурация MongoDB отключена, обновление данных по расписанию не запускается.
+ * Сеть не нужна: клиент и сервер работают в одном процессе.
+ * <p>
+ * Параметры (системные свойства или аргументы {@code --name=value}):
+ * <ul>
+ *     <li>loadtest.corpus - директория с парами файл/подпись, см. {@link LoadTestCorpus};
+ *     по умолчанию набор генерируется;</li>
+ *     <li>loadtest.sizes - размеры сгенерированных файлов через запятую, по умолчанию 1024,65536,1048576;</li>
+ *     <li>loadtest.concurrency - максимум одновременных запросов, по умолчанию 32;</li>
+ *     <li>loadtest.rate - запросов в секунду, 0 - без ограничения (по умолчанию);</li>
+ *     <li>loadtest.warmup - запросов прогрева, по умолчанию 2000;</li>
+ *     <li>loadtest.requests - запросов в замере, по умолчанию 20000.</li>
+ * </ul>
+ * Запуск: {@code mvn -P benchmark test-compile exec:java@loadtest -Dloadtest.concurrency=64 -Dloadtest.rate=500}.
+ *
+ * @author maksimgurin
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = {
+    MongoAutoConfiguration.class, MongoDataAutoConfiguration.class, MongoRepositoriesAutoConfiguration.class,
+    MongoReactiveAutoConfiguration.class, MongoReactiveDataAutoConfiguration.class,
+    MongoReactiveRepositoriesAutoConfiguration.class})
+@EnableWebFlux
+@ComponentScan(basePackageClasses = Main.class, excludeFilters = @ComponentScan.Filter(
+    type = FilterType.ASSIGNABLE_TYPE, classes = Main.class))
+public class LoadTestApplication {
+
+    private static final String PREFIX = "loadtest.";
+    private static final String DEFAULT_SIZES = "1024,65536,1048576";
+    private static final int DEFAULT_CONCURRENCY = 32;
+    private static final int DEFAULT_WARMUP = 2000;
+    private static final int DEFAULT_REQUESTS = 20000;
+
+    /**
+     * Запуск теста.
+     *
+     * @param args параметры командной строки
+     * @throws Exception ошибка подготовки или прогона
+     */
+    @SuppressWarnings("uncommentedmain")
+    public static void main(String[] args) throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        SpringApplication application = new SpringApplication(LoadTestApplication.class);
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("server.port", "0");
+        defaults.put("storage.type", "memory");
+        application.setDefaultProperties(defaults);
+
+        try (ConfigurableApplicationContext context = application.run(args)) {
+            Environment env = context.getEnvironment();
+            int port = env.getRequiredProperty("local.server.port", Integer.class);
+            LoadTestCorpus corpus = context.getBean(LoadTestCorpus.class);
+            LoadGenerator generator = new LoadGenerator(port, corpus,
+                env.getProperty(PREFIX + "concurrency", Integer.class, DEFAULT_CONCURRENCY),
+                env.getProperty(PREFIX + "rate", Integer.class, 0));
+
+            List<VerificationResult> probe = generator.probe().block();
+            List<LoadTestCorpus.Sample> samples = corpus.getSamples();
+            for (int i = 0; i < samples.size(); i++) {
+                System.out.printf("%s: qualified=%s%n", samples.get(i).getName(), probe.get(i).getQualified());
+            }
+            System.out.println(generator.run(env.getProperty(PREFIX + "warmup", Integer.class, DEFAULT_WARMUP))
+                .block().format("warmup"));
+            System.out.println(generator.run(env.getProperty(PREFIX + "requests", Integer.class, DEFAULT_REQUESTS))
+                .block().format("measurement"));
+        }
+    }
+
+    /**
+     * Набор для теста. Хранилища отдают его сертификаты и CRL.
+     *
+     * @param directory директория набора или пустая строка
+     * @param sizes     размеры сгенерированных файлов
+     * @return набор
+     * @throws Exception ошибка чтения или генерации
+     */
+    @Bean
+    public LoadTestCorpus loadTestCorpus(@Value("${loadtest.corpus:}") String directory,
+                                         @Value("${loadtest.sizes:" + DEFAULT_SIZES + "}") String sizes) throws Exception {
+        List<Integer> sizeList = Arrays.stream(sizes.split(",")).map(String::trim).map(Integer::valueOf)
+            .collect(Collectors.toList());
+        return directory.isEmpty() ? LoadTestCorpus.generate(sizeList) : LoadTestCorpus.read(Paths.get(directory));
+    }
+
+    /**
+     * Заполнить хранилища в памяти сертификатами и CRL из набора до начала прогона.
+     *
+     * @param loadTestCorpus     набор
+     * @param certificateStorage хранилище сертификатов
+     * @param crlStorage         хранилище CRL
+     * @return runner
+     */
+    @Bean
+    public ApplicationRunner loadTestStorageLoader(LoadTestCorpus loadTestCorpus, CertificateStorage certificateStorage,
+                                                   CRLStorage crlStorage) {
+        return args -> certificateStorage.saveAllCertificates(Flux.fromIterable(loadTestCorpus.getCertificates()))
+            .thenMany(Flux.fromIterable(loadTestCorpus.getCrls()).concatMap(crlStorage::save))
+            .blockLast();
+    }
+}
@@ -0,0 +1,147 @@
+package ru.gostmaster.loadtest;
+
+import ru.gostmaster.benchmark.GostFixtures;
+import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.parser.CertificateParser;
+import ru.gostmaster.parser.CrlParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Набор пар "файл - открепленная подпись" для нагрузочного теста и данные для хранилищ.
+ * <p>
+ * Набор берется из директории: каждому файлу {@code name.sig} соответствует подписанный файл {@code name}.
+ * Сертификаты из файлов {@code *.cer} и {@code *.crt} той же директории считаются доверенными,
+ * CRL из файлов {@code *.crl} отдаются хранилищем CRL. Без директории набор генерируется
+ * по {@link GostFixtures}: файлы заданных размеров, подписанные тестовым сертификатом.
+ *
+ * @author maksimgurin
+ */
+public final class LoadTestCorpus {
+
+    private static final String SIGNATURE_SUFFIX = ".sig";
+    private static final String FIXTURE_CRL_URL = "http://loadtest.local/root.crl";
+
+    private final List<Sample> samples;
+    private final List<Certificate> certificates;
+    private final List<Crl> crls;
+
+    private LoadTestCorpus(List<Sample> samples, List<Certificate> certificates, List<Crl> crls) {
+        this.samples = Collections.unmodifiableList(samples);
+        this.certificates = Collections.unmodifiableList(certificates);
+        this.crls = Collections.unmodifiableList(crls);
+    }
+
+    /**
+     * Сгенерировать набор по тестовым сертификатам.
+     *
+     * @param sizes размеры файлов, байт
+     * @return набор
+     * @throws Exception ошибка генерации
+     */
+    public static LoadTestCorpus generate(List<Integer> sizes) throws Exception {
+        GostFixtures fixtures = GostFixtures.get();
+        Random random = new Random(sizes.hashCode());
+        List<Sample> samples = new ArrayList<>();
+        for (Integer size : sizes) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            samples.add(new Sample("generated-" + size, data, fixtures.sign(data)));
+        }
+        Certificate root = new CertificateParser().parseRawDataCertificate(fixtures.getRootCertificate().getEncoded());
+        root.setTrusted(true);
+        Crl crl = new CrlParser().parseRawDataCrl(fixtures.getSmallCrl(), FIXTURE_CRL_URL);
+        return new LoadTestCorpus(samples, Collections.singletonList(root), Collections.singletonList(crl));
+    }
+
+    /**
+     * Прочитать набор из директории.
+     *
+     * @param directory директория
+     * @return набор
+     * @throws IOException              ошибка чтения
+     * @throws GeneralSecurityException ошибка инициализации разбора сертификатов и CRL
+     */
+    public static LoadTestCorpus read(Path directory) throws IOException, GeneralSecurityException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        List<Sample> samples = new ArrayList<>();
+        List<Certificate> certificates = new ArrayList<>();
+        List<Crl> crls = new ArrayList<>();
+        CertificateParser certificateParser = new CertificateParser();
+        CrlParser crlParser = new CrlParser();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(SIGNATURE_SUFFIX)) {
+                Path data = Paths.get(file.toString().substring(0, file.toString().length() - SIGNATURE_SUFFIX.length()));
+                if (Files.isRegularFile(data)) {
+                    samples.add(new Sample(data.getFileName().toString(), Files.readAllBytes(data), Files.readAllBytes(file)));
+                }
+            } else if (name.endsWith(".cer") || name.endsWith(".crt")) {
+                Certificate certificate = certificateParser.parseRawDataCertificate(Files.readAllBytes(file));
+                certificate.setTrusted(true);
+                certificates.add(certificate);
+            } else if (name.endsWith(".crl")) {
+                crls.add(crlParser.parseRawDataCrl(Files.readAllBytes(file), file.toUri().toString()));
+            }
+        }
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("В директории " + directory + " нет пар файл/подпись (*.sig)");
+        }
+        return new LoadTestCorpus(samples, certificates, crls);
+    }
+
+    public List<Sample> getSamples() {
+        return samples;
+    }
+
+    public List<Certificate> getCertificates() {
+        return certificates;
+    }
+
+    public List<Crl> getCrls() {
+        return crls;
+    }
+
+    /**
+     * Пара "файл - подпись".
+     *
+     * @author maksimgurin
+     */
+    public static final class Sample {
+        private final String name;
+        private final byte[] data;
+        private final byte[] signature;
+
+        Sample(String name, byte[] data, byte[] signature) {
+            this.name = name;
+            this.data = data;
+            this.signature = signature;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public byte[] getSignature() {
+            return signature;
+        }
+    }
+}
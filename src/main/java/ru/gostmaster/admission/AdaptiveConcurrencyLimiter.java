@@ -0,0 +1,206 @@
+package ru.gostmaster.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Адаптивный ограничитель числа одновременно выполняемых проверок с ограниченной очередью ожидания.
+ * <p>
+ * Лимит подстраивается по алгоритму Vegas: по отношению минимального времени выполнения запроса к текущему
+ * оценивается число запросов, которые стоят в очереди внутри сервиса. Если очередь короче {@value #ALPHA},
+ * лимит увеличивается на 1, если длиннее {@value #BETA} - уменьшается на 1. Раз в {@value #PROBE_INTERVAL}
+ * замеров минимальное время сбрасывается, чтобы лимит не застревал после изменения нагрузки.
+ * <p>
+ * Запросы сверх лимита ждут в очереди не дольше заданного времени, при заполненной очереди запрос отклоняется сразу.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final int ALPHA = 3;
+    private static final int BETA = 6;
+    private static final int PROBE_INTERVAL = 1000;
+    private static final long UNKNOWN_RTT = -1L;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueSize;
+    private final Duration queueTimeout;
+
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+
+    private int limit;
+    private int inFlight;
+    private long noLoadRtt = UNKNOWN_RTT;
+    private int samples;
+
+    /**
+     * Конструктор.
+     *
+     * @param initialLimit   начальный лимит
+     * @param minLimit       минимальный лимит
+     * @param maxLimit       максимальный лимит
+     * @param queueSize      максимальное число ожидающих запросов
+     * @param queueTimeoutMs максимальное время ожидания в очереди в миллисекундах
+     * @param meterRegistry  реестр метрик
+     */
+    public AdaptiveConcurrencyLimiter(@Value("${verification.limiter.initial-limit}") int initialLimit,
+                                      @Value("${verification.limiter.min-limit}") int minLimit,
+                                      @Value("${verification.limiter.max-limit}") int maxLimit,
+                                      @Value("${verification.limiter.queue-size}") int queueSize,
+                                      @Value("${verification.limiter.queue-timeout-ms}") long queueTimeoutMs,
+                                      MeterRegistry meterRegistry) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.queueSize = queueSize;
+        this.queueTimeout = Duration.ofMillis(queueTimeoutMs);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+
+        Gauge.builder("verification.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("verification.limiter.in-flight", this, AdaptiveConcurrencyLimiter::getInFlight).register(meterRegistry);
+        Gauge.builder("verification.limiter.queue-depth", this, AdaptiveConcurrencyLimiter::getQueueDepth).register(meterRegistry);
+        queueFullRejections = Counter.builder("verification.limiter.rejected").tag("reason", "queue-full")
+            .register(meterRegistry);
+        timeoutRejections = Counter.builder("verification.limiter.rejected").tag("reason", "queue-timeout")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Получить разрешение на выполнение запроса. Если лимит исчерпан, запрос ждет в очереди.
+     *
+     * @return разрешение или ошибка {@link AdmissionRejectedException}, если очередь заполнена
+     *     или время ожидания истекло
+     */
+    public Mono<AdmissionPermit> acquire() {
+        return Mono.<AdmissionPermit>create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            sink.onCancel(() -> cancel(waiter));
+            AdmissionPermit permit = null;
+            boolean rejected = false;
+            synchronized (this) {
+                if (inFlight < limit && queue.isEmpty()) {
+                    permit = grant();
+                } else if (queue.size() < queueSize) {
+                    queue.addLast(waiter);
+                } else {
+                    rejected = true;
+                }
+            }
+            if (permit != null) {
+                sink.success(permit);
+            } else if (rejected) {
+                queueFullRejections.increment();
+                sink.error(new AdmissionRejectedException("Очередь проверки заполнена"));
+            }
+        }).timeout(queueTimeout, Mono.defer(() -> {
+            timeoutRejections.increment();
+            return Mono.error(new AdmissionRejectedException("Истекло время ожидания в очереди проверки"));
+        }));
+    }
+
+    /**
+     * Текущий лимит.
+     *
+     * @return лимит
+     */
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Число выполняющихся запросов.
+     *
+     * @return число запросов
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Число запросов в очереди.
+     *
+     * @return число запросов
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    void release(long startNanos, boolean success) {
+        long rtt = System.nanoTime() - startNanos;
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            if (success) {
+                updateLimit(rtt);
+            }
+            inFlight--;
+            while (inFlight < limit && !queue.isEmpty()) {
+                Waiter waiter = queue.pollFirst();
+                waiter.permit = grant();
+                granted.add(waiter);
+            }
+        }
+        // завершаем ожидание вне блокировки: подписчик сразу начнет выполнять запрос
+        granted.forEach(waiter -> waiter.sink.success(waiter.permit));
+    }
+
+    private AdmissionPermit grant() {
+        inFlight++;
+        return new AdmissionPermit(this);
+    }
+
+    private void updateLimit(long rtt) {
+        samples++;
+        if (noLoadRtt == UNKNOWN_RTT || rtt < noLoadRtt || samples % PROBE_INTERVAL == 0) {
+            noLoadRtt = rtt;
+        }
+        double queueEstimate = rtt > 0 ? limit * (1 - (double) noLoadRtt / rtt) : 0;
+        // увеличиваем лимит, только если он действительно используется
+        if (queueEstimate < ALPHA && inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        } else if (queueEstimate > BETA) {
+            limit = Math.max(minLimit, limit - 1);
+        }
+    }
+
+    private void cancel(Waiter waiter) {
+        AdmissionPermit permit;
+        synchronized (this) {
+            queue.remove(waiter);
+            permit = waiter.permit;
+        }
+        // разрешение выдано, но подписчик уже отменил ожидание
+        if (permit != null) {
+            permit.release(false);
+        }
+    }
+
+    /**
+     * Запрос в очереди. Разрешение выдается под блокировкой ограничителя.
+     *
+     * @author maksimgurin
+     */
+    private static final class Waiter {
+        private final MonoSink<AdmissionPermit> sink;
+        private AdmissionPermit permit;
+
+        Waiter(MonoSink<AdmissionPermit> sink) {
+            this.sink = sink;
+        }
+    }
+}
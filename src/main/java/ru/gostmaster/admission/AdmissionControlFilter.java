@@ -0,0 +1,64 @@
+package ru.gostmaster.admission;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Допуск запросов на проверку подписи через {@link AdaptiveConcurrencyLimiter}. Запрос получает разрешение
+ * до чтения тела, поэтому отклоненные запросы не загружают файлы в память. Отклоненные запросы получают
+ * 503 с заголовком Retry-After.
+ * <p>
+ * Разрешение передается в контексте Reactor: контроллер отмечает начало проверки после загрузки файлов
+ * ({@link AdmissionPermit#startWorkIn(reactor.util.context.Context)}), и время загрузки не влияет на лимит.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+public class AdmissionControlFilter implements WebFilter {
+
+    private static final String VERIFICATION_PATH = "/signature-verification/";
+
+    @Setter(onMethod_ = {@Autowired})
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @Value("${verification.limiter.enabled}")
+    private boolean enabled;
+
+    @Value("${verification.limiter.retry-after-seconds}")
+    private long retryAfterSeconds;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Mono<Void> res;
+        if (enabled && exchange.getRequest().getPath().pathWithinApplication().value().startsWith(VERIFICATION_PATH)) {
+            res = limiter.acquire()
+                .flatMap(permit -> chain.filter(exchange)
+                    .subscriberContext(permit::putTo)
+                    .doFinally(signalType -> permit.release(signalType == SignalType.ON_COMPLETE)))
+                .onErrorResume(AdmissionRejectedException.class, e -> reject(exchange, e));
+        } else {
+            res = chain.filter(exchange);
+        }
+        return res;
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, AdmissionRejectedException ex) {
+        log.debug("Запрос {} отклонен: {}", exchange.getRequest().getPath(), ex.getMessage());
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return response.setComplete();
+    }
+}
@@ -0,0 +1,67 @@
+package ru.gostmaster.admission;
+
+import reactor.util.context.Context;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Разрешение на выполнение одного запроса. Возвращается ровно один раз, повторные вызовы игнорируются.
+ * <p>
+ * Разрешение выдается до чтения тела запроса, но время выполнения для подстройки лимита считается
+ * только от начала проверки ({@link #startWorkIn(Context)}), чтобы время загрузки файлов клиентом
+ * не попадало в замер. Если проверка так и не началась, время запроса не учитывается.
+ *
+ * @author maksimgurin
+ */
+public final class AdmissionPermit {
+
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final AtomicLong workStartNanos = new AtomicLong(NOT_STARTED);
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    AdmissionPermit(AdaptiveConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /**
+     * Отметить начало проверки. Учитывается только первая отметка.
+     */
+    public void startWork() {
+        workStartNanos.compareAndSet(NOT_STARTED, System.nanoTime());
+    }
+
+    /**
+     * Вернуть разрешение.
+     *
+     * @param success запрос завершился нормально и его время можно учитывать при подстройке лимита
+     */
+    public void release(boolean success) {
+        if (released.compareAndSet(false, true)) {
+            long startNanos = workStartNanos.get();
+            limiter.release(startNanos, success && startNanos != NOT_STARTED);
+        }
+    }
+
+    /**
+     * Положить разрешение в контекст Reactor.
+     *
+     * @param context контекст
+     * @return контекст с разрешением
+     */
+    public Context putTo(Context context) {
+        return context.put(AdmissionPermit.class, this);
+    }
+
+    /**
+     * Отметить начало проверки у разрешения из контекста Reactor. Без разрешения в контексте
+     * (ограничитель выключен) ничего не делает.
+     *
+     * @param context контекст
+     */
+    public static void startWorkIn(Context context) {
+        context.<AdmissionPermit>getOrEmpty(AdmissionPermit.class).ifPresent(AdmissionPermit::startWork);
+    }
+}
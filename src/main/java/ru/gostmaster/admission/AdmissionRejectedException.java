@@ -0,0 +1,27 @@
+package ru.gostmaster.admission;
+
+/**
+ * Исключение, когда запрос на проверку не допущен: очередь ожидания заполнена или время ожидания истекло.
+ *
+ * @author maksimgurin
+ */
+public class AdmissionRejectedException extends RuntimeException {
+    public AdmissionRejectedException() {
+    }
+
+    public AdmissionRejectedException(String message) {
+        super(message);
+    }
+
+    public AdmissionRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public AdmissionRejectedException(Throwable cause) {
+        super(cause);
+    }
+
+    public AdmissionRejectedException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
@@ -0,0 +1,96 @@
+package ru.gostmaster.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.parser.exception.CertificateParserException;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.cert.CertificateFactory;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+
+/**
+ * Кэш разобранных сертификатов из хранилища. Ключ - серийный номер сертификата,
+ * вес записи - размер DER представления.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+public class CertificateCache {
+
+    private final Cache<BigInteger, ParsedCertificate> cache;
+
+    /**
+     * Конструктор.
+     *
+     * @param maxWeight максимальный суммарный размер DER (в байтах) закэшированных сертификатов
+     */
+    public CertificateCache(@Value("${cache.certificate.max-weight}") long maxWeight) {
+        this.cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxWeight)
+            .<BigInteger, ParsedCertificate>weigher((sn, parsed) -> parsed.getEncodedSize())
+            .build();
+    }
+
+    /**
+     * Получить разобранный сертификат. Если в кэше нет или сертификат был перезаписан - разбираем заново.
+     *
+     * @param certificate сертификат из хранилища
+     * @return разобранный сертификат
+     * @throws CertificateParserException если сертификат не удалось разобрать
+     */
+    public ParsedCertificate get(Certificate certificate) {
+        BigInteger sn = certificate.getSn();
+        ParsedCertificate parsed = sn == null ? null : cache.getIfPresent(sn);
+        if (parsed == null || !parsed.getThumbprint().equals(certificate.getThumbprint())) {
+            parsed = parse(certificate);
+            if (sn != null) {
+                cache.put(sn, parsed);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Удалить сертификат из кэша. Вызывается при перезаписи сертификата в хранилище.
+     *
+     * @param certificate сертификат
+     */
+    public void invalidate(Certificate certificate) {
+        if (certificate.getSn() != null) {
+            cache.invalidate(certificate.getSn());
+        }
+    }
+
+    /**
+     * Количество сертификатов в кэше.
+     *
+     * @return количество
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    private ParsedCertificate parse(Certificate certificate) {
+        try {
+            // CertificateFactory из BouncyCastle хранит состояние разбора, поэтому на каждый разбор - свой экземпляр
+            CertificateFactory certificateFactory = CertificateFactory.getInstance("X509", BouncyCastleProvider.PROVIDER_NAME);
+            byte[] der = certificate.getDerData();
+            X509Certificate x509Certificate = (X509Certificate) certificateFactory
+                .generateCertificate(new ByteArrayInputStream(der));
+            X509CertificateHolder holder = new X509CertificateHolder(der);
+            return new ParsedCertificate(certificate.getThumbprint(), der.length, x509Certificate, holder,
+                new TrustAnchor(x509Certificate, null));
+        } catch (Exception ex) {
+            throw new CertificateParserException(ex);
+        }
+    }
+}
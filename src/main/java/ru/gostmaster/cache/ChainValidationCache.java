@@ -0,0 +1,113 @@
+package ru.gostmaster.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.verification.VerificationContext;
+import ru.gostmaster.verification.impl.chain.CertificateChain;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш результатов успешной проверки цепочки сертификатов с учетом отзыва. Ключ - SHA-256 сертификата подписанта.
+ * <p>
+ * Запись действительна, пока не вышли новые версии CRL, по которым проверялся отзыв, не истек срок
+ * ближайшего CRL или сертификата цепочки и не обновлялись данные сертификатов.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+public class ChainValidationCache {
+
+    private final Cache<String, ValidatedChain> cache;
+
+    /**
+     * Последние известные версии CRL (thisUpdate) по издателям, загруженные после старта приложения.
+     */
+    private final Map<String, Long> latestCrlVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор.
+     *
+     * @param maxSize максимальное количество закэшированных цепочек
+     */
+    public ChainValidationCache(@Value("${cache.chain.max-size}") long maxSize) {
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .build();
+    }
+
+    /**
+     * Получить действительный результат проверки цепочки для сертификата подписанта.
+     *
+     * @param context контекст проверки подписанта
+     * @return результат, если он есть и действителен
+     */
+    public Optional<ValidatedChain> get(VerificationContext context) {
+        String key = context.getCertificateHash();
+        ValidatedChain validatedChain = cache.getIfPresent(key);
+        if (validatedChain != null && !isValid(validatedChain, System.currentTimeMillis())) {
+            cache.asMap().remove(key, validatedChain);
+            validatedChain = null;
+        }
+        return Optional.ofNullable(validatedChain);
+    }
+
+    /**
+     * Запомнить успешный результат проверки цепочки.
+     *
+     * @param context     контекст проверки подписанта
+     * @param chain       построенная цепочка
+     * @param crlVersions версии CRL (thisUpdate по issuerKey), по которым проверялся отзыв
+     * @param expiresAt   момент, после которого результат недействителен
+     */
+    public void put(VerificationContext context, CertificateChain chain, Map<String, Long> crlVersions, long expiresAt) {
+        ValidatedChain validatedChain = new ValidatedChain(chain, crlVersions, expiresAt);
+        if (isValid(validatedChain, System.currentTimeMillis())) {
+            cache.put(context.getCertificateHash(), validatedChain);
+        }
+    }
+
+    /**
+     * Отметить загрузку новой версии CRL. Результаты, проверенные по более старой версии, становятся недействительны.
+     *
+     * @param crl сохраненный CRL
+     */
+    public void crlUpdated(Crl crl) {
+        if (crl.getIssuerKey() != null && crl.getThisUpdate() != null) {
+            latestCrlVersions.merge(crl.getIssuerKey(), crl.getThisUpdate().getTime(), Math::max);
+        }
+    }
+
+    /**
+     * Сбросить все результаты. Вызывается после обновления данных сертификатов.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        log.debug("Кэш проверенных цепочек сброшен");
+    }
+
+    /**
+     * Количество закэшированных цепочек.
+     *
+     * @return количество
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    private boolean isValid(ValidatedChain validatedChain, long now) {
+        boolean res = now < validatedChain.getExpiresAt();
+        for (Map.Entry<String, Long> version : validatedChain.getCrlVersions().entrySet()) {
+            Long latest = latestCrlVersions.get(version.getKey());
+            res &= latest == null || latest <= version.getValue();
+        }
+        return res;
+    }
+}
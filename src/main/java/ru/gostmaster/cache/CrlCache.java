@@ -0,0 +1,133 @@
+package ru.gostmaster.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.parser.exception.CrlParserException;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.NoSuchProviderException;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Кэш разобранных списков отозванных сертификатов (CRL). Ключ - издатель, вид и номер списка и дата выпуска
+ * (thisUpdate): все это есть в документе хранилища, поэтому для попадания в кэш сжатый список не распаковывается.
+ * Вес записи - размер списка в DER, определяется при разборе.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+public class CrlCache {
+
+    private final Cache<CrlKey, ParsedCrl> cache;
+
+    /**
+     * Конструктор.
+     *
+     * @param maxWeight максимальный суммарный размер (в байтах DER) закэшированных списков
+     */
+    public CrlCache(@Value("${cache.crl.max-weight}") long maxWeight) {
+        this.cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxWeight)
+            .<CrlKey, ParsedCrl>weigher((key, parsed) -> parsed.encodedSize)
+            .build();
+    }
+
+    /**
+     * Получить разобранный CRL. Одновременные запросы одного и того же списка разбирают его один раз.
+     *
+     * @param crl CRL из хранилища
+     * @return разобранный CRL
+     * @throws CrlParserException если список не удалось разобрать
+     */
+    public X509CRL get(Crl crl) {
+        try {
+            return cache.get(CrlKey.of(crl), () -> parse(crl)).crl;
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            throw new CrlParserException(ex.getCause());
+        }
+    }
+
+    /**
+     * Обновить кэш после сохранения CRL: разбираем новую версию и убираем более старые версии того же издателя.
+     *
+     * @param crl сохраненный CRL
+     */
+    public void refresh(Crl crl) {
+        CrlKey newKey = CrlKey.of(crl);
+        cache.asMap().keySet().removeIf(key -> key.isOlderVersionOf(newKey));
+        if (cache.getIfPresent(newKey) == null) {
+            try {
+                cache.put(newKey, parse(crl));
+            } catch (Exception ex) {
+                log.debug("Не удалось разобрать CRL {}: {}", crl.getDownloadedFrom(), ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Количество списков в кэше.
+     *
+     * @return количество
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    private ParsedCrl parse(Crl crl) throws CertificateException, CRLException, NoSuchProviderException {
+        // CertificateFactory из BouncyCastle хранит состояние разбора, поэтому на каждый разбор - свой экземпляр
+        CertificateFactory certificateFactory = CertificateFactory.getInstance("X509", BouncyCastleProvider.PROVIDER_NAME);
+        // сжатый список распаковывается только здесь, при промахе кэша
+        byte[] der = crl.getDerData();
+        return new ParsedCrl((X509CRL) certificateFactory.generateCRL(new ByteArrayInputStream(der)), der.length);
+    }
+
+    /**
+     * Ключ кэша: издатель, вид (полный или разностный), номер и дата выпуска списка. Строится без обращения к DER.
+     *
+     * @author maksimgurin
+     */
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class CrlKey {
+        private final String issuerKey;
+        private final boolean delta;
+        private final BigInteger crlNumber;
+        private final long thisUpdate;
+
+        static CrlKey of(Crl crl) {
+            long thisUpdate = crl.getThisUpdate() == null ? 0 : crl.getThisUpdate().getTime();
+            return new CrlKey(crl.getIssuerKey(), crl.getBaseCrlNumber() != null, crl.getCrlNumber(), thisUpdate);
+        }
+
+        boolean isOlderVersionOf(CrlKey other) {
+            // разностный список не вытесняет полный, к которому относится
+            return Objects.equals(issuerKey, other.issuerKey) && delta == other.delta && thisUpdate < other.thisUpdate;
+        }
+    }
+
+    /**
+     * Разобранный список и размер его DER (вес записи).
+     *
+     * @author maksimgurin
+     */
+    @AllArgsConstructor
+    private static final class ParsedCrl {
+        private final X509CRL crl;
+        private final int encodedSize;
+    }
+}
@@ -0,0 +1,30 @@
+package ru.gostmaster.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bouncycastle.cert.X509CertificateHolder;
+
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+
+/**
+ * Разобранный сертификат из хранилища во всех представлениях, которые нужны при проверке подписи.
+ *
+ * @author maksimgurin
+ */
+@Getter
+@AllArgsConstructor
+public class ParsedCertificate {
+
+    /**
+     * Отпечаток DER, из которого был получен объект. Нужен, чтобы не отдать устаревший объект после перезаписи сертификата.
+     */
+    private final String thumbprint;
+    /**
+     * Размер DER в байтах, вес записи в кэше.
+     */
+    private final int encodedSize;
+    private final X509Certificate certificate;
+    private final X509CertificateHolder holder;
+    private final TrustAnchor trustAnchor;
+}
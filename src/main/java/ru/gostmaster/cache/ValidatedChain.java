@@ -0,0 +1,29 @@
+package ru.gostmaster.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.gostmaster.verification.impl.chain.CertificateChain;
+
+import java.util.Map;
+
+/**
+ * Цепочка сертификатов, успешно проверенная с учетом отзыва, и условия, при которых результат проверки остается верным.
+ *
+ * @author maksimgurin
+ */
+@Getter
+@AllArgsConstructor
+public class ValidatedChain {
+
+    private final CertificateChain chain;
+
+    /**
+     * Версии CRL (thisUpdate по issuerKey), по которым проверялся отзыв.
+     */
+    private final Map<String, Long> crlVersions;
+
+    /**
+     * Момент, после которого результат недействителен: ближайший nextUpdate CRL или notAfter сертификата цепочки.
+     */
+    private final long expiresAt;
+}
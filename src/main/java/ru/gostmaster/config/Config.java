@@ -1,20 +1,28 @@
 package ru.gostmaster.config;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.gostmaster.cache.CertificateCache;
 import ru.gostmaster.loader.CRLUrlLoader;
 import ru.gostmaster.loader.impl.cert.DirectoryCertificateLoader;
 import ru.gostmaster.loader.impl.cert.XMLInetCertificateLoader;
 import ru.gostmaster.loader.impl.crl.ListCrlUrlLoader;
 import ru.gostmaster.loader.impl.crl.XMLInetCrlUrlLoader;
-import ru.gostmaster.storage.impl.MongoCertificateStorage;
-import ru.gostmaster.storage.impl.MongoCrlUrlStorage;
+import ru.gostmaster.storage.CRLUrlStorage;
+import ru.gostmaster.storage.CertificateStorage;
+import ru.gostmaster.tracing.Tracer;
 import ru.gostmaster.updater.CRLUrlUpdater;
 import ru.gostmaster.updater.CertificateUpdater;
 import ru.gostmaster.verification.Check;
@@ -26,6 +34,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 /**
@@ -46,16 +56,20 @@ public class Config {
      * @param dirLoader     загрузчик сертификатов из директории
      * @param storage       ссылка на хранилище сертификатов.
      * @param crlUrlStorage хранилище ссылок CRL.
+     * @param certificateCache кэш разобранных сертификатов.
+     * @param tracer        трассировка.
      * @return bean
      */
     @Autowired
     @Bean
     public CertificateUpdater certificateUpdater(XMLInetCertificateLoader inetLoader,
                                                  DirectoryCertificateLoader dirLoader,
-                                                 MongoCertificateStorage storage,
-                                                 MongoCrlUrlStorage crlUrlStorage) {
+                                                 CertificateStorage storage,
+                                                 CRLUrlStorage crlUrlStorage,
+                                                 CertificateCache certificateCache,
+                                                 Tracer tracer) {
         return new CertificateUpdater(Lists.newArrayList(dirLoader), Lists.newArrayList(inetLoader),
-            storage, crlUrlStorage);
+            storage, crlUrlStorage, certificateCache, tracer);
     }
 
     /**
@@ -64,15 +78,17 @@ public class Config {
      * @param inetLoader    загрузчик ссылок на CRL из интернета с сайта Минкомсвязи
      * @param listCrlLoader загрузчик ссылок на CRL из списка в файле
      * @param storage       ссылка на хранилище ссыдлк CRL.
+     * @param tracer        трассировка.
      * @return bean
      */
     @Autowired
     @Bean
     public CRLUrlUpdater crlUpdater(XMLInetCrlUrlLoader inetLoader,
                                     ListCrlUrlLoader listCrlLoader,
-                                    MongoCrlUrlStorage storage) {
+                                    CRLUrlStorage storage,
+                                    Tracer tracer) {
         List<CRLUrlLoader> loaders = Arrays.asList(listCrlLoader, inetLoader);
-        CRLUrlUpdater updater = new CRLUrlUpdater(loaders, storage);
+        CRLUrlUpdater updater = new CRLUrlUpdater(loaders, storage, tracer);
         return updater;
     }
 
@@ -104,6 +120,24 @@ public class Config {
         return new VerificationChecksServiceIImpl(checks);
     }
 
+    /**
+     * Пул для криптографических операций проверки подписи, чтобы они не занимали потоки Netty.
+     * Размер пула фиксирован (по умолчанию - число ядер), метрики пула публикуются под именем "verification".
+     * @param threads размер пула, 0 - по числу ядер
+     * @param meterRegistry реестр метрик
+     * @return scheduler
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler verificationScheduler(@Value("${verification.scheduler.threads}") int threads,
+                                           MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executorService = Executors.newFixedThreadPool(poolSize, new ThreadFactoryBuilder()
+            .setNameFormat("verification-%d")
+            .setDaemon(true)
+            .build());
+        return Schedulers.fromExecutorService(ExecutorServiceMetrics.monitor(meterRegistry, executorService, "verification"));
+    }
+
 //    /**
 //     * Настройка ObjectMapper.
 //     * @return objectMapper
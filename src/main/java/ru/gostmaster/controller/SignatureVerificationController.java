@@ -6,39 +6,78 @@ import io.swagger.annotations.ApiImplicitParams;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.Hex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.Part;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.gostmaster.admission.AdmissionPermit;
 import ru.gostmaster.messages.Messages;
+import ru.gostmaster.metrics.UploadSize;
 import ru.gostmaster.parser.CMSDataParser;
 import ru.gostmaster.parser.exception.CMSSignedDataParserException;
+import ru.gostmaster.tracing.Tracer;
 import ru.gostmaster.util.FileUtils;
 import ru.gostmaster.verification.VerificationService;
+import ru.gostmaster.verification.data.BatchVerificationItem;
+import ru.gostmaster.verification.data.BatchVerificationItemResult;
+import ru.gostmaster.verification.data.BatchVerificationResult;
 import ru.gostmaster.verification.data.VerificationResult;
+import ru.gostmaster.verification.exception.DigestUploadException;
 import ru.gostmaster.verification.exception.SignatureUploadException;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Контроллер для обращения с фронта.
  *
  * @author maksimgurin
  */
+@Slf4j
 @RestController
 @RequestMapping("/signature-verification")
 public class SignatureVerificationController {
 
+    private static final String DATA_PART = "data";
+    private static final String SIGNATURE_PART = "sig";
+    private static final Pattern HEX_PATTERN = Pattern.compile("([0-9a-fA-F]{2})+");
+
     @Setter(onMethod_ = {@Autowired})
     private VerificationService verificationService;
 
     @Setter(onMethod_ = {@Autowired})
     private ObjectMapper objectMapper;
+
+    @Setter(onMethod_ = {@Autowired})
+    private Tracer tracer;
+
+    /**
+     * Сколько пар из пакета проверяется одновременно.
+     */
+    @Value("${verification.batch.concurrency}")
+    private int batchConcurrency;
     
     /**
      * Проверить файлы.
@@ -62,28 +101,255 @@ public class SignatureVerificationController {
     })
     public Mono<ResponseEntity<VerificationResult>> verify(@RequestPart("data") Mono<FilePart> data,
                                                            @RequestPart("sig") Mono<FilePart> signature) {
-        Mono<byte[]> dataBytesMono = data.flatMap(filePart -> FileUtils.readToBytes(filePart.content()));
-        Mono<byte[]> sigBytesMono = signature.flatMap(filePart -> FileUtils.readToBytes(filePart.content()));
+        Mono<Flux<DataBuffer>> dataContentMono = data.map(FilePart::content);
+        Mono<byte[]> sigBytesMono = signature.flatMap(filePart -> readSignature(filePart.content()));
+
+        Mono<ResponseEntity<VerificationResult>> res = verifyContent(dataContentMono, sigBytesMono)
+            .map(verificationResult -> Boolean.TRUE.equals(verificationResult.getUploadingError()) ?
+                ResponseEntity.badRequest().body(verificationResult) : ResponseEntity.ok(verificationResult));
+
+        return res;
+    }
+
+    /**
+     * Проверить подпись по хэшу файла, не загружая сам файл.
+     * @param signature подпись
+     * @param digest хэш подписанного файла в hex или base64
+     * @param digestAlgorithm OID алгоритма хэширования. Нужен, только если в подписи несколько алгоритмов
+     * @return результат проверки
+     */
+    @RequestMapping(
+        path = "/verify-digest",
+        method = RequestMethod.POST,
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        consumes = MediaType.MULTIPART_FORM_DATA_VALUE
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, response = VerificationResult.class, message = "Результат проверки"),
+        @ApiResponse(code = 400, response = VerificationResult.class, message = "Ошибка проверки")
+    })
+    @ApiImplicitParams({
+        @ApiImplicitParam(name = "sig", dataType = "__file", paramType = "form", required = true),
+        @ApiImplicitParam(name = "digest", dataType = "string", paramType = "form", required = true),
+        @ApiImplicitParam(name = "digest_alg", dataType = "string", paramType = "form")
+    })
+    public Mono<ResponseEntity<VerificationResult>> verifyDigest(@RequestPart("sig") Mono<FilePart> signature,
+                                                                 @RequestPart("digest") String digest,
+                                                                 @RequestPart(value = "digest_alg", required = false)
+                                                                     String digestAlgorithm) {
+        Mono<byte[]> sigBytesMono = signature.flatMap(filePart -> readSignature(filePart.content()));
 
-        Mono<ResponseEntity<VerificationResult>> res = Mono.zip(dataBytesMono, sigBytesMono)
-            .map(pair -> CMSDataParser.parse(pair.getT1(), pair.getT2()))
+        Mono<VerificationResult> verification = sigBytesMono
+            .flatMap(sig -> startWork(tracer.trace("cms.parse",
+                Mono.fromCallable(() -> CMSDataParser.parse(buildHashes(sig, digest, digestAlgorithm), sig)))))
             .flatMap(cmsSignedData -> verificationService.verify(cmsSignedData))
-            .map(verificationResult -> ResponseEntity.ok(verificationResult))
-            .onErrorResume(SignatureUploadException.class, e -> {
-                VerificationResult verificationResult = new VerificationResult();
-                verificationResult.setUploadingErrorDate(new Date());
-                verificationResult.setUploadingErrorDescription(Messages.getMessage(Messages.ERROR_UPLOADING_SIGNATURE));
-                verificationResult.setUploadingError(true);
-                return Mono.just(ResponseEntity.badRequest().body(verificationResult));
+            .onErrorResume(DigestUploadException.class, e -> Mono.just(buildErrorResult(Messages.INVALID_DIGEST)));
+
+        return handleUploadErrors(verification)
+            .map(verificationResult -> Boolean.TRUE.equals(verificationResult.getUploadingError()) ?
+                ResponseEntity.badRequest().body(verificationResult) : ResponseEntity.ok(verificationResult));
+    }
+
+    /**
+     * Проверить присоединенную подпись. Подписанное содержимое хэшируется по мере загрузки и в памяти не собирается.
+     * @param signature присоединенная подпись
+     * @return результат проверки
+     */
+    @RequestMapping(
+        path = "/verify-attached",
+        method = RequestMethod.POST,
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        consumes = MediaType.MULTIPART_FORM_DATA_VALUE
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, response = VerificationResult.class, message = "Результат проверки"),
+        @ApiResponse(code = 400, response = VerificationResult.class, message = "Ошибка проверки")
+    })
+    @ApiImplicitParams({
+        @ApiImplicitParam(name = "sig", dataType = "__file", paramType = "form", required = true)
+    })
+    public Mono<ResponseEntity<VerificationResult>> verifyAttached(@RequestPart("sig") Mono<FilePart> signature) {
+        UploadSize uploadSize = new UploadSize();
+        Mono<VerificationResult> verification = signature
+            .flatMap(filePart -> tracer.trace("cms.parse-attached",
+                FileUtils.readAsStream(uploadSize.count(filePart.content()), CMSDataParser::parseAttached)))
+            .flatMap(signedData -> startWork(
+                verificationService.verify(signedData.getSignerInfos(), signedData.getCertificates())))
+            .subscriberContext(uploadSize::putTo);
+
+        return handleUploadErrors(verification)
+            .map(verificationResult -> Boolean.TRUE.equals(verificationResult.getUploadingError()) ?
+                ResponseEntity.badRequest().body(verificationResult) : ResponseEntity.ok(verificationResult));
+    }
+
+    /**
+     * Пакетная проверка: пары файл/подпись передаются частями multipart с именами "data" и "sig",
+     * i-я часть "data" проверяется с i-й частью "sig".
+     * @param parts части запроса
+     * @return результаты проверки в порядке пар
+     */
+    @RequestMapping(
+        path = "/verify-batch",
+        method = RequestMethod.POST,
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        consumes = MediaType.MULTIPART_FORM_DATA_VALUE
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, response = BatchVerificationResult.class, message = "Результаты проверки")
+    })
+    public Mono<BatchVerificationResult> verifyBatch(@RequestBody Mono<MultiValueMap<String, Part>> parts) {
+        Flux<BatchVerificationItemResult> results = parts.flatMapMany(multiValueMap -> {
+            List<Part> dataParts = multiValueMap.getOrDefault(DATA_PART, Collections.emptyList());
+            List<Part> sigParts = multiValueMap.getOrDefault(SIGNATURE_PART, Collections.emptyList());
+            return Flux.range(0, Math.max(dataParts.size(), sigParts.size()))
+                .flatMapSequential(i -> verifyItem(getPartId(dataParts, i),
+                    verifyContent(getPartContent(dataParts, i), readPart(sigParts, i))), batchConcurrency);
+        });
+        return collectBatchResult(results);
+    }
+
+    /**
+     * Пакетная проверка: пары файл/подпись передаются построчно в JSON (файл и подпись в base64).
+     * @param items пары для проверки
+     * @return результаты проверки в порядке пар
+     */
+    @RequestMapping(
+        path = "/verify-batch",
+        method = RequestMethod.POST,
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        consumes = MediaType.APPLICATION_STREAM_JSON_VALUE
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, response = BatchVerificationResult.class, message = "Результаты проверки")
+    })
+    public Mono<BatchVerificationResult> verifyBatchStream(@RequestBody Flux<BatchVerificationItem> items) {
+        Flux<BatchVerificationItemResult> results = items.index()
+            .flatMapSequential(indexed -> verifyItem(
+                indexed.getT2().getId() == null ? String.valueOf(indexed.getT1()) : indexed.getT2().getId(),
+                verifyBytes(Mono.justOrEmpty(indexed.getT2().getData()), Mono.justOrEmpty(indexed.getT2().getSignature()))),
+                batchConcurrency);
+        return collectBatchResult(results);
+    }
+
+    private Mono<BatchVerificationItemResult> verifyItem(String id, Mono<VerificationResult> verification) {
+        return verification
+            .onErrorResume(throwable -> {
+                log.warn("Ошибка проверки пары " + id, throwable);
+                return Mono.just(buildErrorResult(Messages.CORRUPTED_DATA));
             })
-            .onErrorResume(CMSSignedDataParserException.class, e -> {
-                VerificationResult verificationResult = new VerificationResult();
-                verificationResult.setUploadingErrorDate(new Date());
-                verificationResult.setUploadingErrorDescription(Messages.getMessage(Messages.SIGNATURE_INVALID_FORMAT));
-                verificationResult.setUploadingError(true);
-                return Mono.just(ResponseEntity.badRequest().body(verificationResult));
-            });
+            .defaultIfEmpty(buildErrorResult(Messages.ERROR_UPLOADING_SIGNATURE))
+            .map(verificationResult -> new BatchVerificationItemResult(id, verificationResult));
+    }
+
+    private Mono<VerificationResult> verifyBytes(Mono<byte[]> data, Mono<byte[]> signature) {
+        UploadSize uploadSize = new UploadSize();
+        return handleUploadErrors(Mono.zip(data.doOnNext(bytes -> uploadSize.add(bytes.length)), signature)
+            .flatMap(pair -> startWork(tracer.trace("cms.parse",
+                Mono.fromCallable(() -> CMSDataParser.parse(pair.getT1(), pair.getT2())))))
+            .flatMap(cmsSignedData -> verificationService.verify(cmsSignedData))
+            .subscriberContext(uploadSize::putTo));
+    }
+
+    /**
+     * Проверка без сбора файла в памяти: сначала читаем подпись и узнаем алгоритмы хэширования,
+     * затем считаем хэши файла по мере чтения и проверяем подпись по готовым хэшам.
+     */
+    private Mono<VerificationResult> verifyContent(Mono<Flux<DataBuffer>> data, Mono<byte[]> signature) {
+        UploadSize uploadSize = new UploadSize();
+        return handleUploadErrors(signature
+            .flatMap(sig -> data
+                .flatMap(content -> tracer.trace("multipart.digest",
+                    FileUtils.readToDigests(uploadSize.count(content), CMSDataParser.getDigestAlgorithms(sig))))
+                .flatMap(hashes -> startWork(tracer.trace("cms.parse",
+                    Mono.fromCallable(() -> CMSDataParser.parse(hashes, sig))))))
+            .flatMap(cmsSignedData -> verificationService.verify(cmsSignedData))
+            .subscriberContext(uploadSize::putTo));
+    }
+
+    /**
+     * Файлы загружены, дальше - сама проверка. Время загрузки не входит в замер ограничителя запросов.
+     */
+    private static <T> Mono<T> startWork(Mono<T> work) {
+        return Mono.subscriberContext().doOnNext(AdmissionPermit::startWorkIn).then(work);
+    }
+
+    private static Mono<VerificationResult> handleUploadErrors(Mono<VerificationResult> verification) {
+        return verification
+            .onErrorResume(SignatureUploadException.class, e ->
+                Mono.just(buildErrorResult(Messages.ERROR_UPLOADING_SIGNATURE)))
+            .onErrorResume(CMSSignedDataParserException.class, e ->
+                Mono.just(buildErrorResult(Messages.SIGNATURE_INVALID_FORMAT)));
+    }
+
+    /**
+     * Хэш от клиента подставляется для алгоритма хэширования подписи: указанного явно или единственного в подписи.
+     */
+    private static Map<ASN1ObjectIdentifier, byte[]> buildHashes(byte[] signature, String digest, String digestAlgorithm) {
+        Set<ASN1ObjectIdentifier> signatureAlgorithms = CMSDataParser.getDigestAlgorithms(signature).stream()
+            .map(AlgorithmIdentifier::getAlgorithm)
+            .collect(Collectors.toSet());
+        ASN1ObjectIdentifier algorithm;
+        try {
+            if (StringUtils.hasText(digestAlgorithm)) {
+                algorithm = new ASN1ObjectIdentifier(digestAlgorithm.trim());
+            } else if (signatureAlgorithms.size() == 1) {
+                algorithm = signatureAlgorithms.iterator().next();
+            } else {
+                throw new DigestUploadException("В подписи несколько алгоритмов хэширования: " + signatureAlgorithms);
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new DigestUploadException(ex);
+        }
+        return Collections.singletonMap(algorithm, decodeDigest(digest));
+    }
+
+    private static byte[] decodeDigest(String digest) {
+        String value = digest == null ? "" : digest.trim();
+        if (value.isEmpty()) {
+            throw new DigestUploadException("Не указан хэш");
+        }
+        try {
+            return HEX_PATTERN.matcher(value).matches() ? Hex.decode(value) : Base64.decode(value);
+        } catch (Exception ex) {
+            throw new DigestUploadException(ex);
+        }
+    }
+
+    private static VerificationResult buildErrorResult(String messageKey) {
+        VerificationResult verificationResult = new VerificationResult();
+        verificationResult.setUploadingErrorDate(new Date());
+        verificationResult.setUploadingErrorDescription(Messages.getMessage(messageKey));
+        verificationResult.setUploadingError(true);
+        return verificationResult;
+    }
+
+    private static Mono<BatchVerificationResult> collectBatchResult(Flux<BatchVerificationItemResult> results) {
+        return results.collectList().map(items -> {
+            BatchVerificationResult batchResult = new BatchVerificationResult();
+            batchResult.setVerificationTime(new Date());
+            batchResult.setItemsCount(items.size());
+            batchResult.setItems(items);
+            return batchResult;
+        });
+    }
+
+    private static Mono<Flux<DataBuffer>> getPartContent(List<Part> parts, int index) {
+        return index < parts.size() ? Mono.just(parts.get(index).content()) : Mono.empty();
+    }
+
+    private Mono<byte[]> readPart(List<Part> parts, int index) {
+        return index < parts.size() ? readSignature(parts.get(index).content()) : Mono.empty();
+    }
+
+    private Mono<byte[]> readSignature(Flux<DataBuffer> content) {
+        return tracer.trace("multipart.read", FileUtils.readToBytes(content));
+    }
 
+    private static String getPartId(List<Part> parts, int index) {
+        String res = String.valueOf(index);
+        if (index < parts.size() && parts.get(index) instanceof FilePart) {
+            res = ((FilePart) parts.get(index)).filename();
+        }
         return res;
     }
 }
@@ -0,0 +1,46 @@
+package ru.gostmaster.controller;
+
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import ru.gostmaster.tracing.InMemorySpanCollector;
+import ru.gostmaster.tracing.Span;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Просмотр интервалов трассировки из локального сборщика.
+ *
+ * @author maksimgurin
+ */
+@RestController
+@RequestMapping("/tracing")
+public class TracingController {
+
+    @Setter(onMethod_ = {@Autowired})
+    private InMemorySpanCollector spanCollector;
+
+    /**
+     * Получить последние интервалы.
+     * @param traceId только интервалы этой трассы
+     * @param minDurationMs только интервалы не короче, мс
+     * @return интервалы от старых к новым
+     */
+    @RequestMapping(
+        path = "/spans",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public Mono<List<Span>> getSpans(@RequestParam(value = "traceId", required = false) String traceId,
+                                     @RequestParam(value = "minDurationMs", defaultValue = "0") long minDurationMs) {
+        long minDurationMicros = TimeUnit.MILLISECONDS.toMicros(minDurationMs);
+        return Mono.fromSupplier(() -> spanCollector.getSpans(span ->
+            (traceId == null || traceId.equals(span.getTraceId())) && span.getDurationMicros() >= minDurationMicros));
+    }
+}
@@ -42,10 +42,16 @@ public interface Certificate {
     Date getEndDate();
 
     /**
-     * Данные сертификата в формате PEM.
-     * @return pem
+     * Данные сертификата в формате DER.
+     * @return der
      */
-    String getPemData();
+    byte[] getDerData();
+
+    /**
+     * Отпечаток SHA-256 данных сертификата (DER) в hex.
+     * @return отпечаток
+     */
+    String getThumbprint();
 
     /**
      * Флаг, является ли сертификат доверенным.
@@ -1,6 +1,8 @@
 package ru.gostmaster.data.crl;
 
+import java.math.BigInteger;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Общий интерфейс представления CRL.
@@ -24,11 +26,11 @@ public interface Crl {
     String getIssuer();
 
     /**
-     * Данные сертификата в формате PEM.
+     * Список в формате DER.
      *
-     * @return PEM представление
+     * @return DER представление
      */
-    String getPemData();
+    byte[] getDerData();
 
     /**
      * Дата следующего обновления CRL.
@@ -48,4 +50,34 @@ public interface Crl {
      * @return ссылка
      */
     String getDownloadedFrom();
+
+    /**
+     * Номер списка (расширение CRLNumber).
+     * @return номер или null, если не указан
+     */
+    BigInteger getCrlNumber();
+
+    /**
+     * Номер базового списка, к которому относится разностный список (расширение DeltaCRLIndicator).
+     * @return номер базового списка или null для полного списка
+     */
+    BigInteger getBaseCrlNumber();
+
+    /**
+     * Ссылки на разностные списки к этому списку (расширение FreshestCRL).
+     * @return список ссылок
+     */
+    List<String> getDeltaCrlUrls();
+
+    /**
+     * ETag HTTP-ответа, с которым был скачан список.
+     * @return ETag или null
+     */
+    String getEtag();
+
+    /**
+     * Last-Modified HTTP-ответа, с которым был скачан список.
+     * @return значение заголовка или null
+     */
+    String getLastModified();
 }
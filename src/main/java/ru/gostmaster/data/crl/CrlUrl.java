@@ -3,7 +3,8 @@ package ru.gostmaster.data.crl;
 import java.util.Date;
 
 /**
- * Интерфейс для сущности "ссылка  на crl". Хранит данные, последнего скачивания и дату, когда надо перекачать.
+ * Интерфейс для сущности "ссылка  на crl". Хранит данные, последнего скачивания и дату, когда надо перекачать,
+ * а также валидаторы HTTP (ETag, Last-Modified), по которым повторное скачивание неизмененного списка пропускается.
  *
  * @author maksimgurin
  */
@@ -30,4 +31,18 @@ public interface CrlUrl {
      */
     Date getNextUpdate();
 
+    /**
+     * Получить ETag последнего скачивания для условного запроса.
+     *
+     * @return ETag или null
+     */
+    String getEtag();
+
+    /**
+     * Получить Last-Modified последнего скачивания для условного запроса.
+     *
+     * @return значение заголовка или null
+     */
+    String getLastModified();
+
 }
@@ -42,4 +42,14 @@ public final class AlgorithmsNames {
     public static String getAlgorithmName(String algOid) {
         return ALG_OID_NAMES.getOrDefault(algOid, algOid);
     }
+
+    /**
+     * Известен ли алгоритм.
+     *
+     * @param algOid oid
+     * @return true, если OID есть в справочнике
+     */
+    public static boolean isKnown(String algOid) {
+        return algOid != null && ALG_OID_NAMES.containsKey(algOid);
+    }
 }
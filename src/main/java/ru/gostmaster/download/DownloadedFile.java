@@ -0,0 +1,35 @@
+package ru.gostmaster.download;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Результат загрузки файла.
+ *
+ * @author maksimgurin
+ */
+@Getter
+@AllArgsConstructor
+public final class DownloadedFile {
+
+    /**
+     * Исходная ссылка (до редиректов).
+     */
+    private final String url;
+    /**
+     * Содержимое файла. Пустое при ошибке загрузки и при ответе 304 Not Modified.
+     */
+    private final byte[] content;
+    /**
+     * Сервер ответил 304 Not Modified: файл не изменился с загрузки, к которой относятся переданные валидаторы.
+     */
+    private final boolean notModified;
+    /**
+     * Файл не скачан: ошибка соединения или ответа сервера.
+     */
+    private final boolean failed;
+    /**
+     * Валидаторы ответа для следующего условного запроса.
+     */
+    private final HttpValidators validators;
+}
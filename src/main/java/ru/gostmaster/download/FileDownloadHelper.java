@@ -32,6 +32,17 @@ public class FileDownloadHelper {
      * @return Пара  ссылка - содержимое файла
      */
     public Mono<Pair<String, byte[]>> download(String url) {
+        return download(url, HttpValidators.NONE).map(file -> Pair.of(url, file.getContent()));
+    }
+
+    /**
+     * Загрузить файл условным запросом: если файл не изменился с загрузки, к которой относятся валидаторы,
+     * сервер отвечает 304 Not Modified и файл не скачивается.
+     * @param url        ссылка
+     * @param validators валидаторы предыдущей загрузки или {@link HttpValidators#NONE}
+     * @return результат загрузки. При ошибке - пустое содержимое и признак failed
+     */
+    public Mono<DownloadedFile> download(String url, HttpValidators validators) {
         return Mono.create(monoSink -> {
             String fetchUrl = url;
             int status = -1;
@@ -40,20 +51,23 @@ public class FileDownloadHelper {
                 do {
                     HttpHeaders httpHeaders = new HttpHeaders();
                     httpHeaders.add(HttpHeaders.USER_AGENT, DEFAULT_USER_AGENT);
+                    validators.applyTo(httpHeaders);
                     HttpEntity requestEntity = new HttpEntity(httpHeaders);
                     
                     exchange = restTemplate.exchange(fetchUrl, HttpMethod.GET, requestEntity, byte[].class);
                     status = exchange.getStatusCodeValue();
-                    if (HttpStatus.resolve(status).is3xxRedirection()) {
+                    if (isRedirect(status)) {
                         fetchUrl = exchange.getHeaders().get(HttpHeaders.LOCATION).get(0);
                     }
-                } while (HttpStatus.resolve(status).is3xxRedirection());
-                Pair<String, byte[]> resPair = Pair.of(url, exchange.getBody());
-                monoSink.success(resPair);
+                } while (isRedirect(status));
+                boolean notModified = status == HttpStatus.NOT_MODIFIED.value();
+                byte[] content = notModified || exchange.getBody() == null ? new byte[0] : exchange.getBody();
+                monoSink.success(new DownloadedFile(url, content, notModified, false,
+                    notModified ? validators : HttpValidators.of(exchange.getHeaders())));
             } catch (Exception ex) {
                 log.debug("Error downloading from {}. Cause {}", url, ex.getMessage());
                 // нельзя тут ошибку. иначе пайп порвем
-                monoSink.success(Pair.of(url, new byte[0]));
+                monoSink.success(new DownloadedFile(url, new byte[0], false, true, HttpValidators.NONE));
             }
         });
     }
@@ -62,4 +76,9 @@ public class FileDownloadHelper {
     public void setRestTemplate(RestTemplate restTemplate) {
         this.restTemplate = restTemplate;
     }
+
+    private static boolean isRedirect(int status) {
+        // 304 - ответ на условный запрос, а не редирект
+        return HttpStatus.resolve(status).is3xxRedirection() && status != HttpStatus.NOT_MODIFIED.value();
+    }
 }
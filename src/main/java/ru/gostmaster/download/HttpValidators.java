@@ -0,0 +1,90 @@
+package ru.gostmaster.download;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+
+/**
+ * Валидаторы HTTP-ответа (ETag и Last-Modified). Передаются в условном запросе (If-None-Match и If-Modified-Since),
+ * и если файл на сервере не изменился, сервер отвечает 304 Not Modified без тела.
+ *
+ * @author maksimgurin
+ */
+@Getter
+@AllArgsConstructor
+public final class HttpValidators {
+
+    /**
+     * Валидаторов нет - запрос безусловный.
+     */
+    public static final HttpValidators NONE = new HttpValidators(null, null);
+
+    private final String etag;
+    private final String lastModified;
+
+    /**
+     * Валидаторы из заголовков ответа.
+     *
+     * @param headers заголовки ответа
+     * @return валидаторы
+     */
+    public static HttpValidators of(HttpHeaders headers) {
+        return new HttpValidators(headers.getETag(), headers.getFirst(HttpHeaders.LAST_MODIFIED));
+    }
+
+    /**
+     * Валидаторы из заголовков ответа.
+     *
+     * @param connection соединение, по которому получен ответ
+     * @return валидаторы
+     */
+    public static HttpValidators of(URLConnection connection) {
+        return new HttpValidators(connection.getHeaderField(HttpHeaders.ETAG),
+            connection.getHeaderField(HttpHeaders.LAST_MODIFIED));
+    }
+
+    /**
+     * Ответил ли сервер 304 Not Modified.
+     *
+     * @param connection соединение
+     * @return true, если файл не изменился
+     * @throws IOException ошибка получения ответа
+     */
+    public static boolean isNotModified(URLConnection connection) throws IOException {
+        return connection instanceof HttpURLConnection &&
+            ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Добавить в заголовки запроса условия If-None-Match и If-Modified-Since.
+     *
+     * @param headers заголовки запроса
+     */
+    public void applyTo(HttpHeaders headers) {
+        if (StringUtils.hasText(etag)) {
+            headers.set(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (StringUtils.hasText(lastModified)) {
+            headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+    }
+
+    /**
+     * Добавить в запрос условия If-None-Match и If-Modified-Since. Вызывается до подключения.
+     *
+     * @param connection соединение
+     */
+    public void applyTo(URLConnection connection) {
+        if (StringUtils.hasText(etag)) {
+            connection.setRequestProperty(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (StringUtils.hasText(lastModified)) {
+            connection.setRequestProperty(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+    }
+}
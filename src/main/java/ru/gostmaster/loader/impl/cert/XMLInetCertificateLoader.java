@@ -10,6 +10,7 @@ import org.xml.sax.helpers.DefaultHandler;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
 import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.download.HttpValidators;
 import ru.gostmaster.loader.CertificateLoader;
 import ru.gostmaster.parser.CertificateParser;
 
@@ -33,6 +34,8 @@ public class XMLInetCertificateLoader implements CertificateLoader {
     
     private String url;
     private CertificateParser certificateParser;
+    // валидаторы последней полностью разобранной загрузки XML, неизмененный XML повторно не разбирается
+    private volatile HttpValidators validators = HttpValidators.NONE;
 
     @Override
     public Flux<Certificate> loadCertificates() {
@@ -41,13 +44,21 @@ public class XMLInetCertificateLoader implements CertificateLoader {
             try {
                 log.info("Preparing to extract cert list from website {}", url);
                 URLConnection urlConnection = new URL(url).openConnection();
-                InputStream inputStream = urlConnection.getInputStream();
-
-                SAXParserFactory factory = SAXParserFactory.newInstance();
-                SAXParser parser = factory.newSAXParser();
-                XMLCertificateDefaultHandler handler = new XMLCertificateDefaultHandler(fluxSink, certificateParser);
-                parser.parse(inputStream, handler);
-                log.warn("Cert list extracted!");
+                validators.applyTo(urlConnection);
+                if (HttpValidators.isNotModified(urlConnection)) {
+                    log.info("Cert list on {} is not modified", url);
+                    fluxSink.complete();
+                } else {
+                    HttpValidators received = HttpValidators.of(urlConnection);
+                    InputStream inputStream = urlConnection.getInputStream();
+
+                    SAXParserFactory factory = SAXParserFactory.newInstance();
+                    SAXParser parser = factory.newSAXParser();
+                    XMLCertificateDefaultHandler handler = new XMLCertificateDefaultHandler(fluxSink, certificateParser);
+                    parser.parse(inputStream, handler);
+                    validators = received;
+                    log.warn("Cert list extracted!");
+                }
             } catch (Exception ex) {
                 log.error("", ex);
                 fluxSink.error(ex);
@@ -8,6 +8,7 @@ import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
+import ru.gostmaster.download.HttpValidators;
 import ru.gostmaster.loader.CRLUrlLoader;
 
 import java.io.InputStream;
@@ -26,6 +27,8 @@ import javax.xml.parsers.SAXParserFactory;
 public class XMLInetCrlUrlLoader implements CRLUrlLoader {
 
     private String url;
+    // валидаторы последней полностью разобранной загрузки XML, неизмененный XML повторно не разбирается
+    private volatile HttpValidators validators = HttpValidators.NONE;
 
     @Override
     public Flux<String> loadCrlUrls() {
@@ -33,13 +36,21 @@ public class XMLInetCrlUrlLoader implements CRLUrlLoader {
             try {
                 log.info("Preparing to extract crl list from website {}", url);
                 URLConnection urlConnection = new URL(url).openConnection();
-                InputStream inputStream = urlConnection.getInputStream();
+                validators.applyTo(urlConnection);
+                if (HttpValidators.isNotModified(urlConnection)) {
+                    log.info("Crl list on {} is not modified", url);
+                    crlFluxSink.complete();
+                } else {
+                    HttpValidators received = HttpValidators.of(urlConnection);
+                    InputStream inputStream = urlConnection.getInputStream();
 
-                SAXParserFactory factory = SAXParserFactory.newInstance();
-                SAXParser parser = factory.newSAXParser();
-                XMLCRLDefaultHandler handler = new XMLCRLDefaultHandler(crlFluxSink);
-                parser.parse(inputStream, handler);
-                log.info("All crl addresses are extracted from {}", url);
+                    SAXParserFactory factory = SAXParserFactory.newInstance();
+                    SAXParser parser = factory.newSAXParser();
+                    XMLCRLDefaultHandler handler = new XMLCRLDefaultHandler(crlFluxSink);
+                    parser.parse(inputStream, handler);
+                    validators = received;
+                    log.info("All crl addresses are extracted from {}", url);
+                }
             } catch (Exception ex) {
                 crlFluxSink.error(ex);
             }
@@ -20,6 +20,7 @@ public final class Messages {
 
     public static final String ERROR_UPLOADING_SIGNATURE = "ERROR_UPLOADING_SIGNATURE";
     public static final String SIGNATURE_INVALID_FORMAT = "SIGNATURE_INVALID_FORMAT";
+    public static final String INVALID_DIGEST = "INVALID_DIGEST";
     
     private static Map<String, String> messages = new HashMap();
     
@@ -34,7 +35,9 @@ public final class Messages {
 
         messages.put(ERROR_UPLOADING_SIGNATURE, "Ошибка загрузки файла и/или подписи");
         messages.put(SIGNATURE_INVALID_FORMAT, "Неверный формат электронной подписи. " +
-            "Поддерживаются открепленные подписи формата DER и PEM");
+            "Поддерживаются подписи формата DER и PEM: открепленные и присоединенные (для проверки без файла)");
+        messages.put(INVALID_DIGEST, "Не указан или неверно указан хэш подписанного файла. " +
+            "Хэш передается в hex или base64, алгоритм - OID, если в подписи их несколько");
         
     }
     
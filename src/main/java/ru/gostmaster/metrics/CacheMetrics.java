@@ -0,0 +1,42 @@
+package ru.gostmaster.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.gostmaster.cache.CertificateCache;
+import ru.gostmaster.cache.ChainValidationCache;
+import ru.gostmaster.cache.CrlCache;
+import ru.gostmaster.revocation.RevocationIndexRegistry;
+
+/**
+ * Размеры кэшей: gauge "verification.cache.size" с тегом cache.
+ *
+ * @author maksimgurin
+ */
+@Component
+public class CacheMetrics implements MeterBinder {
+
+    private static final String CACHE_SIZE = "verification.cache.size";
+    private static final String CACHE = "cache";
+
+    @Setter(onMethod_ = {@Autowired})
+    private CertificateCache certificateCache;
+    @Setter(onMethod_ = {@Autowired})
+    private CrlCache crlCache;
+    @Setter(onMethod_ = {@Autowired})
+    private ChainValidationCache chainValidationCache;
+    @Setter(onMethod_ = {@Autowired})
+    private RevocationIndexRegistry revocationIndexRegistry;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(CACHE_SIZE, certificateCache, CertificateCache::size).tag(CACHE, "certificate").register(registry);
+        Gauge.builder(CACHE_SIZE, crlCache, CrlCache::size).tag(CACHE, "crl").register(registry);
+        Gauge.builder(CACHE_SIZE, chainValidationCache, ChainValidationCache::size).tag(CACHE, "chain").register(registry);
+        Gauge.builder(CACHE_SIZE, revocationIndexRegistry, RevocationIndexRegistry::size).tag(CACHE, "revocation-index")
+            .register(registry);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.gostmaster.metrics;
+
+import reactor.core.publisher.SignalType;
+
+/**
+ * Значения тега outcome.
+ *
+ * @author maksimgurin
+ */
+public final class MetricsOutcome {
+
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+    public static final String ERROR = "error";
+    public static final String CANCELLED = "cancelled";
+
+    private MetricsOutcome() { }
+
+    /**
+     * Исход по сигналу завершения.
+     *
+     * @param signalType сигнал
+     * @return success, error или cancelled
+     */
+    public static String of(SignalType signalType) {
+        String res = CANCELLED;
+        if (signalType == SignalType.ON_COMPLETE) {
+            res = SUCCESS;
+        } else if (signalType == SignalType.ON_ERROR) {
+            res = ERROR;
+        }
+        return res;
+    }
+}
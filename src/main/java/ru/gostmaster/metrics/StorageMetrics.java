@@ -0,0 +1,65 @@
+package ru.gostmaster.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Время обращений к хранилищам. Таймер "storage.call" с тегами storage, operation и outcome.
+ *
+ * @author maksimgurin
+ */
+@Component
+public class StorageMetrics {
+
+    private static final String STORAGE_CALL = "storage.call";
+
+    @Setter(onMethod_ = {@Autowired})
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Замерить обращение к хранилищу.
+     *
+     * @param storage   хранилище
+     * @param operation операция
+     * @param call      обращение
+     * @param <T>       результат
+     * @return то же обращение с замером времени от подписки до завершения
+     */
+    public <T> Mono<T> time(String storage, String operation, Mono<T> call) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call.doFinally(signalType -> stop(sample, storage, operation, signalType));
+        });
+    }
+
+    /**
+     * Замерить обращение к хранилищу.
+     *
+     * @param storage   хранилище
+     * @param operation операция
+     * @param call      обращение
+     * @param <T>       результат
+     * @return то же обращение с замером времени от подписки до завершения
+     */
+    public <T> Flux<T> time(String storage, String operation, Flux<T> call) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call.doFinally(signalType -> stop(sample, storage, operation, signalType));
+        });
+    }
+
+    private void stop(Timer.Sample sample, String storage, String operation, SignalType signalType) {
+        sample.stop(Timer.builder(STORAGE_CALL)
+            .tag("storage", storage)
+            .tag("operation", operation)
+            .tag("outcome", MetricsOutcome.of(signalType))
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+}
@@ -0,0 +1,84 @@
+package ru.gostmaster.metrics;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.util.context.Context;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Размер загруженного файла в рамках одного запроса. Передается в контексте Reactor, чтобы метрики проверки
+ * можно было разделить по размеру файла. Размер считается по мере чтения, поэтому файл в памяти не собирается.
+ *
+ * @author maksimgurin
+ */
+public final class UploadSize {
+
+    /**
+     * Размер неизвестен (например, проверка по хэшу).
+     */
+    public static final String UNKNOWN_BUCKET = "unknown";
+
+    private static final long KB = 1024L;
+    private static final long[] BUCKET_BOUNDS = {64 * KB, KB * KB, 16 * KB * KB, 256 * KB * KB};
+    private static final String[] BUCKET_NAMES = {"0-64KB", "64KB-1MB", "1MB-16MB", "16MB-256MB", "256MB+"};
+
+    private final AtomicLong bytes = new AtomicLong(-1L);
+
+    /**
+     * Считать байты по мере чтения потока.
+     *
+     * @param content поток байтовых данных
+     * @return тот же поток
+     */
+    public Flux<DataBuffer> count(Flux<DataBuffer> content) {
+        return content.doOnNext(dataBuffer -> add(dataBuffer.readableByteCount()));
+    }
+
+    /**
+     * Добавить прочитанные байты.
+     *
+     * @param count количество байт
+     */
+    public void add(long count) {
+        bytes.accumulateAndGet(count, (current, delta) -> Math.max(current, 0L) + delta);
+    }
+
+    /**
+     * Корзина размера для тега метрик.
+     *
+     * @return имя корзины
+     */
+    public String getBucket() {
+        long size = bytes.get();
+        String res = UNKNOWN_BUCKET;
+        if (size >= 0) {
+            int i = 0;
+            while (i < BUCKET_BOUNDS.length && size > BUCKET_BOUNDS[i]) {
+                i++;
+            }
+            res = BUCKET_NAMES[i];
+        }
+        return res;
+    }
+
+    /**
+     * Положить размер в контекст Reactor.
+     *
+     * @param context контекст
+     * @return контекст с размером
+     */
+    public Context putTo(Context context) {
+        return context.put(UploadSize.class, this);
+    }
+
+    /**
+     * Корзина размера из контекста Reactor.
+     *
+     * @param context контекст
+     * @return имя корзины или {@link #UNKNOWN_BUCKET}, если размера в контексте нет
+     */
+    public static String bucketOf(Context context) {
+        return context.hasKey(UploadSize.class) ? context.<UploadSize>get(UploadSize.class).getBucket() : UNKNOWN_BUCKET;
+    }
+}
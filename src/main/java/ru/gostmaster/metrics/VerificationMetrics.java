@@ -0,0 +1,127 @@
+package ru.gostmaster.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.gostmaster.dictionary.AlgorithmsNames;
+import ru.gostmaster.verification.Check;
+import ru.gostmaster.verification.data.CheckResult;
+import ru.gostmaster.verification.data.VerificationResult;
+
+import java.util.Set;
+
+/**
+ * Метрики проверки подписи. Все метрики имеют теги algorithm (OID алгоритма подписи, см. {@link #algorithmOf(String)})
+ * и size (корзина размера файла, см. {@link UploadSize}):
+ * <ul>
+ *     <li>таймер "verification.check" - время каждой проверки, теги check (код из CheckResults) и outcome;</li>
+ *     <li>таймер "verification.signer" - время всех проверок одного подписанта, тег outcome;</li>
+ *     <li>счетчик "verification.result" - результаты запросов, тег outcome.</li>
+ * </ul>
+ *
+ * @author maksimgurin
+ */
+@Component
+public class VerificationMetrics {
+
+    private static final String CHECK_TIMER = "verification.check";
+    private static final String SIGNER_TIMER = "verification.signer";
+    private static final String RESULT_COUNTER = "verification.result";
+    private static final String ALGORITHM = "algorithm";
+    private static final String SIZE = "size";
+    private static final String OUTCOME = "outcome";
+    private static final String MULTIPLE_ALGORITHMS = "multiple";
+    private static final String OTHER_ALGORITHM = "other";
+
+    @Setter(onMethod_ = {@Autowired})
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Значение тега algorithm. OID берется из загруженной подписи, поэтому неизвестные алгоритмы сводятся
+     * к одному значению "other", чтобы клиент не мог создавать новые серии метрик.
+     *
+     * @param algOid OID алгоритма подписи
+     * @return OID из справочника {@link AlgorithmsNames} или "other"
+     */
+    public static String algorithmOf(String algOid) {
+        return AlgorithmsNames.isKnown(algOid) ? algOid : OTHER_ALGORITHM;
+    }
+
+    /**
+     * Замерить проверку. Код проверки берется из результата, при ошибке - имя класса проверки.
+     *
+     * @param check        проверка
+     * @param algorithm    OID алгоритма подписи
+     * @param sizeBucket   корзина размера файла
+     * @param verification выполнение проверки
+     * @return то же выполнение с замером времени
+     */
+    public Mono<CheckResult> timeCheck(Check check, String algorithm, String sizeBucket, Mono<CheckResult> verification) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return verification
+                .doOnSuccess(checkResult -> sample.stop(timer(CHECK_TIMER, algorithm, sizeBucket, getOutcome(checkResult))
+                    .tag("check", checkResult == null ? check.getClass().getSimpleName() : checkResult.getCode())
+                    .register(meterRegistry)))
+                .doOnError(throwable -> sample.stop(timer(CHECK_TIMER, algorithm, sizeBucket, MetricsOutcome.ERROR)
+                    .tag("check", check.getClass().getSimpleName())
+                    .register(meterRegistry)));
+        });
+    }
+
+    /**
+     * Начать замер проверки подписанта.
+     *
+     * @return замер
+     */
+    public Timer.Sample startSigner() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Завершить замер проверки подписанта.
+     *
+     * @param sample     замер
+     * @param algorithm  OID алгоритма подписи
+     * @param sizeBucket корзина размера файла
+     * @param success    все проверки подписанта успешны
+     */
+    public void stopSigner(Timer.Sample sample, String algorithm, String sizeBucket, boolean success) {
+        sample.stop(timer(SIGNER_TIMER, algorithm, sizeBucket, success ? MetricsOutcome.SUCCESS : MetricsOutcome.FAILURE)
+            .register(meterRegistry));
+    }
+
+    /**
+     * Учесть результат запроса.
+     *
+     * @param result     результат
+     * @param algorithms OID алгоритмов подписи всех подписантов
+     * @param sizeBucket корзина размера файла
+     */
+    public void countResult(VerificationResult result, Set<String> algorithms, String sizeBucket) {
+        String algorithm = algorithms.size() == 1 ? algorithms.iterator().next() : MULTIPLE_ALGORITHMS;
+        Counter.builder(RESULT_COUNTER)
+            .tag(ALGORITHM, algorithm)
+            .tag(SIZE, sizeBucket)
+            .tag(OUTCOME, Boolean.TRUE.equals(result.getQualified()) ? MetricsOutcome.SUCCESS : MetricsOutcome.FAILURE)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    private static Timer.Builder timer(String name, String algorithm, String sizeBucket, String outcome) {
+        return Timer.builder(name)
+            .tag(ALGORITHM, algorithm)
+            .tag(SIZE, sizeBucket)
+            .tag(OUTCOME, outcome)
+            .publishPercentileHistogram();
+    }
+
+    private static String getOutcome(CheckResult checkResult) {
+        return checkResult != null && Boolean.TRUE.equals(checkResult.getSuccess()) ?
+            MetricsOutcome.SUCCESS : MetricsOutcome.FAILURE;
+    }
+}
@@ -7,13 +7,18 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.util.BouncyCastleUtils;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
 import java.util.Date;
 import java.util.List;
 
 /**
  * Реализация сущности сертификата для хранения в MongoDB.
+ * Сертификат хранится в DER (BSON binary) вместе с отпечатком SHA-256. Документы старого формата хранят
+ * сертификат в PEM (pemData) и переводятся в DER при старте, см. {@link ru.gostmaster.storage.impl.MongoCertificateMigration}.
  *
  * @author maksimgurin
  */
@@ -22,13 +27,17 @@ import java.util.List;
 @ToString
 public class MongoCertificateData implements Certificate {
     public static final String COLLECTION = MongoCertificateData.class.getAnnotation(Document.class).collection();
+    public static final String F_ID = "_id";
     public static final String F_TRUSTED = "trusted";
     public static final String F_SUBJECT_KEY = "subjectKey";
     public static final String F_SN = "sn";
     public static final String F_SUBJECT_EXPRESSION = "$" + F_SUBJECT_KEY;
     public static final String F_ISSUER_KEY = "issuerKey";
+    public static final String F_DER_DATA = "derData";
+    public static final String F_PEM_DATA = "pemData";
+    public static final String F_THUMBPRINT = "thumbprint";
     public static final String F_CHAIN = "chain";
-    
+
     @Id
     private ObjectId id;
     @Indexed
@@ -38,9 +47,34 @@ public class MongoCertificateData implements Certificate {
     private BigInteger sn;
     private Date startDate;
     private Date endDate;
+    @ToString.Exclude
+    private byte[] derData;
+    @ToString.Exclude
     private String pemData;
+    private String thumbprint;
     private boolean trusted;
     private List<String> crlUrls;
-    
+
     private List<MongoCertificateData> chain;
+
+    @Override
+    public byte[] getDerData() {
+        // документы старого формата, еще не переведенные в DER
+        if (derData == null && pemData != null) {
+            try {
+                derData = BouncyCastleUtils.pemToDer(pemData);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return derData;
+    }
+
+    @Override
+    public String getThumbprint() {
+        if (thumbprint == null && getDerData() != null) {
+            thumbprint = BouncyCastleUtils.sha256Thumbprint(getDerData());
+        }
+        return thumbprint;
+    }
 }
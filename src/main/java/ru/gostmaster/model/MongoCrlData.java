@@ -5,11 +5,20 @@ import lombok.ToString;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.util.BouncyCastleUtils;
+import ru.gostmaster.util.CompressionCodec;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Реализация сущности списка отозванных сертификатов (CRL) для хранения в MongoDB.
+ * Список хранится в DER (BSON binary). Документы старого формата хранят список в PEM (pemData)
+ * и переводятся в DER при старте, см. {@link ru.gostmaster.storage.impl.MongoCrlMigration}.
+ * Большие списки хранятся сжатыми (алгоритм - в поле compression) и распаковываются при первом обращении к DER.
  * 
  * @author maksimgurin 
  */
@@ -19,12 +28,46 @@ import java.util.Date;
 public class MongoCrlData implements Crl {
     public static final String F_ISSUER_KEY = "issuerKey";
     public static final String F_DONWLOADED_FROM = "downloadedFrom";
+    public static final String F_DER_DATA = "derData";
+    public static final String F_PEM_DATA = "pemData";
+    public static final String F_COMPRESSION = "compression";
+    public static final String F_NEXT_UPDATE = "nextUpdate";
+    public static final String F_CRL_NUMBER = "crlNumber";
+    public static final String F_BASE_CRL_NUMBER = "baseCrlNumber";
+    public static final String F_DELTA_CRL_URLS = "deltaCrlUrls";
+    public static final String F_ETAG = "etag";
+    public static final String F_LAST_MODIFIED = "lastModified";
     @Indexed
     private String issuerKey;
     private String issuer;
+    @ToString.Exclude
+    private byte[] derData;
+    @ToString.Exclude
     private String pemData;
+    private CompressionCodec compression;
     private Date nextUpdate;
     private Date thisUpdate;
     @Indexed
     private String downloadedFrom;
+    private BigInteger crlNumber;
+    private BigInteger baseCrlNumber;
+    private List<String> deltaCrlUrls;
+    private String etag;
+    private String lastModified;
+
+    @Override
+    public synchronized byte[] getDerData() {
+        if (compression != null && derData != null) {
+            derData = compression.decompress(derData);
+            compression = null;
+        } else if (derData == null && pemData != null) {
+            // документы старого формата, еще не переведенные в DER
+            try {
+                derData = BouncyCastleUtils.pemToDer(pemData);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return derData;
+    }
 }
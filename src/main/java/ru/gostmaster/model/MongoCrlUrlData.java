@@ -19,6 +19,8 @@ public class MongoCrlUrlData implements CrlUrl {
     public static final String F_URL = "url";
     public static final String F_CURRENT_UPDATE = "currentUpdate";
     public static final String F_NEXT_UPDATE = "nextUpdate";
+    public static final String F_ETAG = "etag";
+    public static final String F_LAST_MODIFIED = "lastModified";
 
     @Indexed(unique = true)
     private String url;
@@ -26,4 +28,8 @@ public class MongoCrlUrlData implements CrlUrl {
     private Date currentUpdate;
 
     private Date nextUpdate;
+
+    private String etag;
+
+    private String lastModified;
 }
@@ -1,13 +1,28 @@
 package ru.gostmaster.parser;
 
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataParser;
+import org.bouncycastle.cms.CMSTypedStream;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.bouncycastle.util.io.pem.PemObject;
 import org.bouncycastle.util.io.pem.PemReader;
 import ru.gostmaster.parser.exception.CMSSignedDataParserException;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Парсинг подписи для проверки.
@@ -16,6 +31,8 @@ import java.io.InputStreamReader;
  */
 public final class CMSDataParser {
 
+    private static final int PEM_BOUNDARY = '-';
+
     private CMSDataParser() { }
     
     /**
@@ -26,33 +43,151 @@ public final class CMSDataParser {
      * @throws CMSSignedDataParserException если подпись битая
      */
     public static CMSSignedData parse(byte[] file, byte[] signature) throws CMSSignedDataParserException {
-        CMSSignedData res;
+        return parseDerOrPem(signature, der -> new CMSSignedData(new CMSProcessableByteArray(file), der));
+    }
+
+    /**
+     * Парсим подпись, для которой хэши подписанного содержимого уже посчитаны.
+     * @param hashes хэши содержимого по OID алгоритма хэширования
+     * @param signature подпись
+     * @return CMSSignedData
+     * @throws CMSSignedDataParserException если подпись битая
+     */
+    public static CMSSignedData parse(Map<ASN1ObjectIdentifier, byte[]> hashes, byte[] signature)
+        throws CMSSignedDataParserException {
+        return parseDerOrPem(signature, der -> new CMSSignedData(hashes, der));
+    }
+
+    /**
+     * Получить алгоритмы хэширования, которые нужны для проверки подписи.
+     * @param signature подпись
+     * @return алгоритмы хэширования
+     * @throws CMSSignedDataParserException если подпись битая
+     */
+    public static Set<AlgorithmIdentifier> getDigestAlgorithms(byte[] signature) throws CMSSignedDataParserException {
+        return parseDerOrPem(signature, der -> {
+            CMSSignedData signedData = new CMSSignedData(der);
+            Set<AlgorithmIdentifier> res = new HashSet<>(signedData.getDigestAlgorithmIDs());
+            for (SignerInformation signerInformation : signedData.getSignerInfos().getSigners()) {
+                res.add(signerInformation.getDigestAlgorithmID());
+            }
+            return res;
+        });
+    }
+
+    /**
+     * Потоковый разбор присоединенной подписи в DER или PEM. Подписанное содержимое читается один раз
+     * и сразу хэшируется, в памяти оно не собирается.
+     * @param signature поток с подписью
+     * @return подписанты и сертификаты из подписи
+     * @throws CMSSignedDataParserException если подпись битая или не содержит подписанных данных
+     */
+    public static StreamedSignedData parseAttached(InputStream signature) throws CMSSignedDataParserException {
+        try {
+            InputStream input = new BufferedInputStream(signature);
+            input.mark(1);
+            boolean pem = input.read() == PEM_BOUNDARY;
+            input.reset();
+            if (pem) {
+                input = Base64.getMimeDecoder().wrap(new PemBodyInputStream(input));
+            }
+            CMSSignedDataParser parser = new CMSSignedDataParser(new JcaDigestCalculatorProviderBuilder()
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .build(), input);
+            CMSTypedStream signedContent = parser.getSignedContent();
+            if (signedContent == null) {
+                throw new CMSSignedDataParserException("Подпись не содержит подписанных данных");
+            }
+            // хэши считаются при чтении содержимого
+            signedContent.drain();
+            return new StreamedSignedData(parser.getSignerInfos(), parser.getCertificates());
+        } catch (CMSSignedDataParserException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new CMSSignedDataParserException(ex);
+        }
+    }
+
+    private static <T> T parseDerOrPem(byte[] signature, SignatureParser<T> parser) throws CMSSignedDataParserException {
+        T res;
         // пробуем как DER
         try {
-            res = tryWithSigAsDer(file, signature);
+            res = tryWithSigAsDer(signature, parser);
         } catch (CMSSignedDataParserException ex) {
-            res = tryWithSigAsPem(file, signature);
+            res = tryWithSigAsPem(signature, parser);
         }
         return res;
     }
     
-    private static CMSSignedData tryWithSigAsDer(byte[] file, byte[] signature) throws CMSSignedDataParserException {
+    private static <T> T tryWithSigAsDer(byte[] signature, SignatureParser<T> parser) throws CMSSignedDataParserException {
         try {
-            return new CMSSignedData(new CMSProcessableByteArray(file), signature);
+            return parser.parse(signature);
         } catch (Exception ex) {
             throw new CMSSignedDataParserException(ex);
         }
     }
     
-    private static CMSSignedData tryWithSigAsPem(byte[] file, byte[] signature) throws CMSSignedDataParserException {
+    private static <T> T tryWithSigAsPem(byte[] signature, SignatureParser<T> parser) throws CMSSignedDataParserException {
         try {
             PemReader reader = new PemReader(new InputStreamReader(new ByteArrayInputStream(signature)));
             PemObject pemObject = reader.readPemObject();
-            CMSSignedData signedData = new CMSSignedData(new CMSProcessableByteArray(file), pemObject.getContent());
-            return signedData;
+            return parser.parse(pemObject.getContent());
         } catch (Exception ex) {
             throw new CMSSignedDataParserException(ex);
         }
         
     }
+
+    /**
+     * Тело PEM: пропускаем строку заголовка и заканчиваем поток на строке "-----END".
+     *
+     * @author maksimgurin
+     */
+    private static final class PemBodyInputStream extends FilterInputStream {
+        private boolean headerSkipped;
+        private boolean finished;
+
+        PemBodyInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            skipHeader();
+            int res = finished ? -1 : in.read();
+            if (res == PEM_BOUNDARY || res == -1) {
+                finished = true;
+                res = -1;
+            }
+            return res;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = 0;
+            int next = len > 0 ? read() : -1;
+            while (next != -1) {
+                b[off + count++] = (byte) next;
+                next = count < len ? read() : -1;
+            }
+            return count == 0 && len > 0 ? -1 : count;
+        }
+
+        private void skipHeader() throws IOException {
+            while (!headerSkipped) {
+                int next = in.read();
+                headerSkipped = next == '\n' || next == -1;
+            }
+        }
+    }
+
+    /**
+     * Разбор подписи в DER.
+     *
+     * @param <T> результат разбора
+     */
+    @FunctionalInterface
+    private interface SignatureParser<T> {
+        T parse(byte[] der) throws Exception;
+    }
 }
@@ -2,9 +2,6 @@ package ru.gostmaster.parser;
 
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
-import org.bouncycastle.util.io.pem.PemObject;
-import org.bouncycastle.util.io.pem.PemWriter;
 import org.springframework.stereotype.Component;
 import ru.gostmaster.data.cert.Certificate;
 import ru.gostmaster.model.MongoCertificateData;
@@ -12,13 +9,12 @@ import ru.gostmaster.parser.exception.CertificateParserException;
 import ru.gostmaster.util.BouncyCastleUtils;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
 import java.security.NoSuchProviderException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.List;
 
 /**
  * Парсер сертификатов в модель данных приложения.
@@ -66,13 +62,18 @@ public class CertificateParser {
         try {
             X509Certificate certificate = (X509Certificate) certificateFactory.generateCertificate(stream);
             MongoCertificateData certificateData = new MongoCertificateData();
-            certificateData.setCrlUrls(BouncyCastleUtils.getCrlUrlsFromCertificate(certificate));
+            // разностные списки (FreshestCRL) скачиваются вместе с полными
+            List<String> crlUrls = BouncyCastleUtils.getCrlUrlsFromCertificate(certificate);
+            crlUrls.addAll(BouncyCastleUtils.getFreshestCrlUrls(certificate));
+            certificateData.setCrlUrls(crlUrls);
             certificateData.setIssuerKey(BouncyCastleUtils.getAuthorityKeyIdentifier(certificate));
             certificateData.setSubjectKey(BouncyCastleUtils.getSubjectKeyIdentifier(certificate));
             certificateData.setSn(certificate.getSerialNumber());
             certificateData.setStartDate(certificate.getNotBefore());
             certificateData.setEndDate(certificate.getNotAfter());
-            certificateData.setPemData(toPem(certificate.getEncoded()));
+            byte[] encoded = certificate.getEncoded();
+            certificateData.setDerData(encoded);
+            certificateData.setThumbprint(BouncyCastleUtils.sha256Thumbprint(encoded));
             return certificateData;
         } catch (Exception ex) {
             log.error("", ex);
@@ -80,13 +81,4 @@ public class CertificateParser {
         }
     }
 
-    private String toPem(byte[] cert) throws IOException {
-        StringWriter sw = new StringWriter();
-        PemWriter pemWriter = new JcaPEMWriter(sw);
-        PemObject pemObject = new PemObject("CERTIFICATE", cert);
-        pemWriter.writeObject(pemObject);
-        pemWriter.flush();
-        return sw.toString();
-    }
-
 }
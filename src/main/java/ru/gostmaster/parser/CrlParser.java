@@ -8,6 +8,7 @@ import org.bouncycastle.util.io.pem.PemObject;
 import org.bouncycastle.util.io.pem.PemWriter;
 import org.springframework.stereotype.Component;
 import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.download.DownloadedFile;
 import ru.gostmaster.model.MongoCrlData;
 import ru.gostmaster.parser.exception.CrlParserException;
 import ru.gostmaster.util.BouncyCastleUtils;
@@ -25,7 +26,8 @@ import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
- * Парсер списка отозванных сертификатов (CRL).
+ * Парсер списка отозванных сертификатов (CRL). Для разностных списков сохраняется номер базового списка,
+ * для полных - ссылки на разностные списки из расширения FreshestCRL.
  * 
  * @author maksimgurin 
  */
@@ -54,6 +56,19 @@ public class CrlParser {
         return parseRawDataCrl(new ByteArrayInputStream(bytes), url);
     }
 
+    /**
+     * Парсинг скачанного Crl. Валидаторы HTTP-ответа сохраняются в списке для следующего условного запроса.
+     * @param file скачанный файл
+     * @return Crl
+     * @throws CrlParserException при ошибке
+     */
+    public Crl parseRawDataCrl(DownloadedFile file) {
+        MongoCrlData crl = parse(new ByteArrayInputStream(file.getContent()), file.getUrl());
+        crl.setEtag(file.getValidators().getEtag());
+        crl.setLastModified(file.getValidators().getLastModified());
+        return crl;
+    }
+
     /**
      * Парсинг Crl на основании стрима байтов.
      * @param inputStream байты
@@ -62,21 +77,7 @@ public class CrlParser {
      * @throws CrlParserException при ошибке
      */
     public Crl parseRawDataCrl(InputStream inputStream, String url) {
-        try {
-            X509CRL parsed = (X509CRL) certificateFactory.generateCRL(inputStream);
-            X509CRLHolder crlHolder = new X509CRLHolder(parsed.getEncoded());
-            MongoCrlData crl = new MongoCrlData();
-            crl.setIssuerKey(BouncyCastleUtils.getAuthorityKeyIdentifier(parsed));
-            crl.setPemData(toPem(crlHolder.getEncoded()));
-            crl.setNextUpdate(crlHolder.getNextUpdate());
-            crl.setThisUpdate(crlHolder.getThisUpdate());
-            crl.setIssuer(crlHolder.getIssuer().toString());
-            crl.setDownloadedFrom(url);
-            return crl;
-        } catch (Exception ex) {
-            log.debug("Ошибка разбора CRL по ссылке " + url, ex.getMessage());
-            throw new CrlParserException(ex);
-        }
+        return parse(inputStream, url);
     }
 
     /**
@@ -96,10 +97,7 @@ public class CrlParser {
     
     private X509CRLHolder toHolder(Crl crl) {
         try  {
-            X509CRL parsed = (X509CRL) certificateFactory
-                .generateCRL(new ByteArrayInputStream(crl.getPemData().getBytes()));
-            X509CRLHolder crlHolder = new X509CRLHolder(parsed.getEncoded());
-            return crlHolder;
+            return new X509CRLHolder(crl.getDerData());
         } catch (Exception ex) {
             log.error("", ex);
             return null;
@@ -114,4 +112,26 @@ public class CrlParser {
     public List<X509CRLHolder> toHolderList(List<Crl> crlList) {
         return crlList.stream().map(this::toHolder).filter(Objects::nonNull).collect(Collectors.toList());
     }
+
+    private MongoCrlData parse(InputStream inputStream, String url) {
+        try {
+            X509CRL parsed = (X509CRL) certificateFactory.generateCRL(inputStream);
+            byte[] encoded = parsed.getEncoded();
+            X509CRLHolder crlHolder = new X509CRLHolder(encoded);
+            MongoCrlData crl = new MongoCrlData();
+            crl.setIssuerKey(BouncyCastleUtils.getAuthorityKeyIdentifier(parsed));
+            crl.setDerData(encoded);
+            crl.setNextUpdate(crlHolder.getNextUpdate());
+            crl.setThisUpdate(crlHolder.getThisUpdate());
+            crl.setIssuer(crlHolder.getIssuer().toString());
+            crl.setDownloadedFrom(url);
+            crl.setCrlNumber(BouncyCastleUtils.getCrlNumber(parsed));
+            crl.setBaseCrlNumber(BouncyCastleUtils.getBaseCrlNumber(parsed));
+            crl.setDeltaCrlUrls(BouncyCastleUtils.getFreshestCrlUrls(parsed));
+            return crl;
+        } catch (Exception ex) {
+            log.debug("Ошибка разбора CRL по ссылке " + url, ex.getMessage());
+            throw new CrlParserException(ex);
+        }
+    }
 }
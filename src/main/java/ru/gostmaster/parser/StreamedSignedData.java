@@ -0,0 +1,21 @@
+package ru.gostmaster.parser;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.SignerInformationStore;
+import org.bouncycastle.util.Store;
+
+/**
+ * Присоединенная подпись, разобранная потоковым парсером. Подписанное содержимое не хранится,
+ * у подписантов уже посчитан его хэш.
+ *
+ * @author maksimgurin
+ */
+@Getter
+@AllArgsConstructor
+public class StreamedSignedData {
+
+    private final SignerInformationStore signerInfos;
+    private final Store<X509CertificateHolder> certificates;
+}
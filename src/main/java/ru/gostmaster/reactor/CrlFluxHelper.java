@@ -7,8 +7,15 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.data.crl.CrlUrl;
+import ru.gostmaster.download.DownloadedFile;
 import ru.gostmaster.download.FileDownloadHelper;
+import ru.gostmaster.download.HttpValidators;
 import ru.gostmaster.parser.CrlParser;
+import ru.gostmaster.tracing.Tracer;
+
+import java.io.IOException;
+import java.util.Collections;
 
 /**
  * Класс с утилитными методами для загрузки CRL.
@@ -20,6 +27,7 @@ import ru.gostmaster.parser.CrlParser;
 public class CrlFluxHelper {
     private CrlParser crlParser;
     private FileDownloadHelper fileDownloadHelper;
+    private Tracer tracer;
     
     /**
      * Загрузки CRL и получение их в виде потока.
@@ -40,15 +48,32 @@ public class CrlFluxHelper {
     }
 
     /**
-     * Скачать crl по ссылке.
+     * Скачать crl по ссылке. Если список уже скачивался, запрос условный (ETag, Last-Modified): неизмененный
+     * список не скачивается и не разбирается, результат пустой. Если список не скачался или пришел пустым,
+     * результат - ошибка.
      *
-     * @param url ссылка
+     * @param crlUrl ссылка
      * @return объект
      */
-    public Mono<Crl> getCrlFromUrl(String url) {
-        return fileDownloadHelper.download(url)
-            .filter(stringPair -> stringPair.getSecond().length > 0)
-            .map(stringPair -> crlParser.parseRawDataCrl(stringPair.getSecond(), stringPair.getFirst()));
+    public Mono<Crl> getCrlFromUrl(CrlUrl crlUrl) {
+        String url = crlUrl.getUrl();
+        // без даты скачивания список в хранилище мог не сохраниться - качаем безусловно
+        HttpValidators validators = crlUrl.getCurrentUpdate() == null ? HttpValidators.NONE :
+            new HttpValidators(crlUrl.getEtag(), crlUrl.getLastModified());
+        return tracer.trace("crl.download", Collections.singletonMap("url", url), fileDownloadHelper.download(url, validators)
+            .flatMap(file -> {
+                Mono<DownloadedFile> res;
+                if (file.isNotModified()) {
+                    log.debug("CRL {} не изменился", url);
+                    res = Mono.empty();
+                } else if (file.isFailed() || file.getContent().length == 0) {
+                    res = Mono.error(new IOException("CRL не скачан: " + url));
+                } else {
+                    res = Mono.just(file);
+                }
+                return res;
+            })
+            .map(crlParser::parseRawDataCrl));
     }
 
     @Autowired
@@ -60,4 +85,9 @@ public class CrlFluxHelper {
     public void setFileDownloadHelper(FileDownloadHelper fileDownloadHelper) {
         this.fileDownloadHelper = fileDownloadHelper;
     }
+
+    @Autowired
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
 }
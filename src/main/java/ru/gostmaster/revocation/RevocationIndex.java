@@ -0,0 +1,390 @@
+package ru.gostmaster.revocation;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.cert.CRLReason;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Компактный индекс отозванных сертификатов одного издателя, построенный по CRL.
+ * <p>
+ * Серийные номера хранятся по возрастанию, дополненными нулями слева до длины самого длинного номера.
+ * Каждый номер кодируется относительно предыдущего: длина общего префикса и оставшиеся байты. Каждые
+ * {@link #BLOCK_SIZE} записей номер пишется целиком, по этим номерам идет двоичный поиск, внутри блока -
+ * последовательный просмотр. Даты отзыва хранятся в секундах от самой ранней даты списка.
+ * Все данные лежат в одном {@link ByteBuffer}, поиск не создает объектов.
+ *
+ * @author maksimgurin
+ */
+public final class RevocationIndex {
+
+    /**
+     * Значение, которое возвращается для неотозванного сертификата.
+     */
+    public static final long NOT_REVOKED = -1L;
+
+    /**
+     * Значение даты, если дата следующего обновления в списке не указана.
+     */
+    public static final long NO_DATE = 0L;
+
+    static final int BLOCK_SIZE = 16;
+
+    private static final int MAGIC = 0x52564958;
+    private static final int VERSION = 1;
+    private static final int MAX_SERIAL_WIDTH = 255;
+    private static final int WIDTH_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int BLOCK_COUNT_OFFSET = 16;
+    private static final int BASE_SECONDS_OFFSET = 20;
+    private static final int THIS_UPDATE_OFFSET = 28;
+    private static final int NEXT_UPDATE_OFFSET = 36;
+    private static final int HEADER_SIZE = 44;
+    private static final int BYTE_MASK = 0xFF;
+    private static final long UNSIGNED_INT_MASK = 0xFFFFFFFFL;
+    private static final long MILLIS_IN_SECOND = 1000L;
+
+    private final ByteBuffer buffer;
+    private final int width;
+    private final int count;
+    private final int blockCount;
+    private final long baseSeconds;
+    private final long thisUpdate;
+    private final long nextUpdate;
+    private final int blocksOffset;
+    private final int datesOffset;
+    private final int entriesOffset;
+
+    private RevocationIndex(ByteBuffer buffer) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IllegalArgumentException("Неизвестный формат индекса отозванных сертификатов");
+        }
+        this.buffer = buffer;
+        this.width = buffer.getInt(WIDTH_OFFSET);
+        this.count = buffer.getInt(COUNT_OFFSET);
+        this.blockCount = buffer.getInt(BLOCK_COUNT_OFFSET);
+        this.baseSeconds = buffer.getLong(BASE_SECONDS_OFFSET);
+        this.thisUpdate = buffer.getLong(THIS_UPDATE_OFFSET);
+        this.nextUpdate = buffer.getLong(NEXT_UPDATE_OFFSET);
+        this.blocksOffset = HEADER_SIZE;
+        this.datesOffset = blocksOffset + blockCount * Integer.BYTES;
+        this.entriesOffset = datesOffset + count * Integer.BYTES;
+        if (entriesOffset > buffer.limit()) {
+            throw new IllegalArgumentException("Индекс отозванных сертификатов поврежден");
+        }
+    }
+
+    /**
+     * Построить индекс по списку отозванных сертификатов.
+     *
+     * @param crl CRL
+     * @return индекс
+     */
+    public static RevocationIndex build(X509CRL crl) {
+        return build(crl, null);
+    }
+
+    /**
+     * Построить индекс по полному списку и разностному списку к нему: к записям полного списка добавляются
+     * записи разностного, номера с причиной removeFromCRL исключаются. Даты выпуска и следующего обновления
+     * берутся из разностного списка.
+     *
+     * @param crl   полный CRL
+     * @param delta разностный CRL, выпущенный позже полного, или null
+     * @return индекс
+     */
+    public static RevocationIndex build(X509CRL crl, X509CRL delta) {
+        X509CRL latest = delta == null ? crl : delta;
+        List<Entry> entries = collectEntries(crl, delta);
+        int width = 1;
+        for (Entry entry : entries) {
+            width = Math.max(width, entry.serial.length);
+        }
+        if (width > MAX_SERIAL_WIDTH) {
+            throw new IllegalArgumentException("Слишком длинный серийный номер в CRL: " + width + " байт");
+        }
+        long baseSeconds = entries.stream().mapToLong(entry -> entry.seconds).min().orElse(0);
+
+        int blockCount = (entries.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] blockOffsets = new int[blockCount];
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        byte[] previous = null;
+        for (int i = 0; i < entries.size(); i++) {
+            byte[] current = pad(entries.get(i).serial, width);
+            if (i % BLOCK_SIZE == 0) {
+                blockOffsets[i / BLOCK_SIZE] = encoded.size();
+                encoded.write(current, 0, width);
+            } else {
+                int prefix = commonPrefix(previous, current);
+                encoded.write(prefix);
+                encoded.write(current, prefix, width - prefix);
+            }
+            previous = current;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (blockCount + entries.size()) * Integer.BYTES +
+            encoded.size());
+        buffer.putInt(MAGIC)
+            .putInt(VERSION)
+            .putInt(width)
+            .putInt(entries.size())
+            .putInt(blockCount)
+            .putLong(baseSeconds)
+            .putLong(latest.getThisUpdate() == null ? NO_DATE : latest.getThisUpdate().getTime())
+            .putLong(latest.getNextUpdate() == null ? NO_DATE : latest.getNextUpdate().getTime());
+        for (int blockOffset : blockOffsets) {
+            buffer.putInt(blockOffset);
+        }
+        for (Entry entry : entries) {
+            buffer.putInt((int) (entry.seconds - baseSeconds));
+        }
+        buffer.put(encoded.toByteArray());
+        buffer.flip();
+        return new RevocationIndex(buffer.asReadOnlyBuffer());
+    }
+
+    /**
+     * Прочитать индекс из буфера, ранее полученного через {@link #getBuffer()}, например из отображенного
+     * в память файла. Данные не копируются.
+     *
+     * @param buffer буфер
+     * @return индекс
+     * @throws IllegalArgumentException если формат буфера не поддерживается
+     */
+    public static RevocationIndex read(ByteBuffer buffer) {
+        return new RevocationIndex(buffer);
+    }
+
+    /**
+     * Получить дату отзыва сертификата.
+     *
+     * @param serial серийный номер сертификата
+     * @return дата отзыва в миллисекундах или {@link #NOT_REVOKED}, если сертификат не отозван
+     */
+    public long getRevocationDate(BigInteger serial) {
+        return getRevocationDate(serial.toByteArray());
+    }
+
+    /**
+     * Получить дату отзыва сертификата.
+     *
+     * @param serial серийный номер сертификата в виде беззнакового числа (big-endian), ведущие нули допустимы
+     * @return дата отзыва в миллисекундах или {@link #NOT_REVOKED}, если сертификат не отозван
+     */
+    public long getRevocationDate(byte[] serial) {
+        int start = 0;
+        while (start < serial.length - 1 && serial[start] == 0) {
+            start++;
+        }
+        int position = -1;
+        if (count > 0 && serial.length - start <= width) {
+            // сдвиг между позицией в номере индекса и позицией в запрашиваемом номере
+            int shift = serial.length - width;
+            int block = findBlock(serial, shift);
+            if (block >= 0) {
+                position = scanBlock(block, serial, shift);
+            }
+        }
+        long res = NOT_REVOKED;
+        if (position >= 0) {
+            long seconds = baseSeconds + (buffer.getInt(datesOffset + position * Integer.BYTES) & UNSIGNED_INT_MASK);
+            res = seconds * MILLIS_IN_SECOND;
+        }
+        return res;
+    }
+
+    /**
+     * Действует ли список на указанный момент (не наступила дата следующего обновления).
+     *
+     * @param time момент времени в миллисекундах
+     * @return true, если список действует
+     */
+    public boolean isFreshAt(long time) {
+        return nextUpdate == NO_DATE || time < nextUpdate;
+    }
+
+    /**
+     * Дата выпуска списка.
+     *
+     * @return дата в миллисекундах
+     */
+    public long getThisUpdate() {
+        return thisUpdate;
+    }
+
+    /**
+     * Дата следующего обновления списка.
+     *
+     * @return дата в миллисекундах или {@link #NO_DATE}
+     */
+    public long getNextUpdate() {
+        return nextUpdate;
+    }
+
+    /**
+     * Количество отозванных сертификатов в индексе.
+     *
+     * @return количество
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Буфер с данными индекса (только для чтения).
+     *
+     * @return буфер
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    // байт запрашиваемого номера, дополненного нулями слева до ширины индекса
+    private static int queryByte(byte[] serial, int shift, int i) {
+        int index = i + shift;
+        return index < 0 ? 0 : serial[index] & BYTE_MASK;
+    }
+
+    // последний блок, первый номер которого не больше запрашиваемого, или -1
+    private int findBlock(byte[] serial, int shift) {
+        int low = 0;
+        int high = blockCount - 1;
+        int res = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int start = entriesOffset + buffer.getInt(blocksOffset + middle * Integer.BYTES);
+            int cmp = 0;
+            for (int i = 0; cmp == 0 && i < width; i++) {
+                cmp = (buffer.get(start + i) & BYTE_MASK) - queryByte(serial, shift, i);
+            }
+            if (cmp <= 0) {
+                res = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return res;
+    }
+
+    // поиск номера внутри блока: отслеживаем длину совпадения текущего номера с запрашиваемым,
+    // поэтому номера не восстанавливаются целиком. Возвращает позицию записи или -1
+    private int scanBlock(int block, byte[] serial, int shift) {
+        int position = entriesOffset + buffer.getInt(blocksOffset + block * Integer.BYTES);
+        int match = 0;
+        while (match < width && (buffer.get(position + match) & BYTE_MASK) == queryByte(serial, shift, match)) {
+            match++;
+        }
+        position += width;
+        int index = block * BLOCK_SIZE;
+        int end = Math.min(count, index + BLOCK_SIZE);
+        boolean done = match == width;
+        while (!done && ++index < end) {
+            int prefix = buffer.get(position++) & BYTE_MASK;
+            if (prefix < match) {
+                // номер отличается от предыдущего раньше, чем тот от запрашиваемого: он уже больше запрашиваемого
+                done = true;
+                index = end;
+            } else if (prefix == match) {
+                int suffixStart = position - prefix;
+                while (match < width && (buffer.get(suffixStart + match) & BYTE_MASK) == queryByte(serial, shift, match)) {
+                    match++;
+                }
+                done = match == width || (buffer.get(suffixStart + match) & BYTE_MASK) > queryByte(serial, shift, match);
+                if (done && match < width) {
+                    index = end;
+                }
+            }
+            position += width - prefix;
+        }
+        return done && index < end ? index : -1;
+    }
+
+    private static List<Entry> collectEntries(X509CRL crl, X509CRL delta) {
+        List<Entry> entries = new ArrayList<>();
+        for (X509CRLEntry crlEntry : revokedCertificates(crl)) {
+            entries.add(new Entry(magnitude(crlEntry.getSerialNumber().toByteArray()),
+                crlEntry.getRevocationDate().getTime() / MILLIS_IN_SECOND));
+        }
+        // номера, которые разностный список вернул в действие
+        Set<byte[]> removed = new TreeSet<>(RevocationIndex::compareSerials);
+        for (X509CRLEntry crlEntry : revokedCertificates(delta)) {
+            byte[] serial = magnitude(crlEntry.getSerialNumber().toByteArray());
+            if (crlEntry.getRevocationReason() == CRLReason.REMOVE_FROM_CRL) {
+                removed.add(serial);
+            } else {
+                entries.add(new Entry(serial, crlEntry.getRevocationDate().getTime() / MILLIS_IN_SECOND));
+            }
+        }
+        Collections.sort(entries, Comparator.<Entry, byte[]>comparing(entry -> entry.serial, RevocationIndex::compareSerials)
+            .thenComparingLong(entry -> entry.seconds));
+        // при повторе номера оставляем самую раннюю дату отзыва
+        List<Entry> res = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (!removed.contains(entry.serial) &&
+                (res.isEmpty() || compareSerials(res.get(res.size() - 1).serial, entry.serial) != 0)) {
+                res.add(entry);
+            }
+        }
+        return res;
+    }
+
+    private static Set<? extends X509CRLEntry> revokedCertificates(X509CRL crl) {
+        Set<? extends X509CRLEntry> revoked = crl == null ? null : crl.getRevokedCertificates();
+        return revoked == null ? Collections.emptySet() : revoked;
+    }
+
+    private static byte[] magnitude(byte[] serial) {
+        int start = 0;
+        while (start < serial.length - 1 && serial[start] == 0) {
+            start++;
+        }
+        return Arrays.copyOfRange(serial, start, serial.length);
+    }
+
+    private static int compareSerials(byte[] left, byte[] right) {
+        int res = Integer.compare(left.length, right.length);
+        for (int i = 0; res == 0 && i < left.length; i++) {
+            res = Integer.compare(left[i] & BYTE_MASK, right[i] & BYTE_MASK);
+        }
+        return res;
+    }
+
+    private static byte[] pad(byte[] serial, int width) {
+        byte[] res = new byte[width];
+        System.arraycopy(serial, 0, res, width - serial.length, serial.length);
+        return res;
+    }
+
+    private static int commonPrefix(byte[] left, byte[] right) {
+        int res = 0;
+        while (res < left.length && left[res] == right[res]) {
+            res++;
+        }
+        return res;
+    }
+
+    /**
+     * Запись списка при построении индекса.
+     *
+     * @author maksimgurin
+     */
+    private static final class Entry {
+        private final byte[] serial;
+        private final long seconds;
+
+        Entry(byte[] serial, long seconds) {
+            this.serial = serial;
+            this.seconds = seconds;
+        }
+    }
+}
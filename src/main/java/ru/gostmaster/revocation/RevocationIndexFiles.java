@@ -0,0 +1,172 @@
+package ru.gostmaster.revocation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.util.encoders.Hex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Файлы индексов отозванных сертификатов: по одному файлу на издателя в директории revocation.index.directory.
+ * Файл содержит данные {@link RevocationIndex#getBuffer()} как есть (заголовок с thisUpdate/nextUpdate,
+ * отсортированные номера и даты отзыва) и читается через {@link java.nio.MappedByteBuffer}, поэтому индексы
+ * не занимают кучу, поиск идет через страничный кэш ОС без разбора, а после перезапуска индексы доступны сразу.
+ * <p>
+ * Имя файла - идентификатор ключа издателя в hex и уникальный суффикс версии: каждая версия индекса пишется
+ * в свой файл, сначала во временный, затем атомарно переименовывается. Файл вытесненной версии удаляется
+ * через {@link #delete(RevocationIndex)}, при старте из нескольких файлов издателя остается самый новый.
+ * Если директория не задана, индексы хранятся только в памяти.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+public class RevocationIndexFiles {
+
+    private static final String SUFFIX = ".rvix";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String SEPARATOR = ".";
+
+    private final Path directory;
+    // файлы отображенных индексов, по идентичности индекса
+    private final Map<RevocationIndex, Path> files = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Конструктор.
+     *
+     * @param directory директория файлов индексов, пустая строка - не хранить индексы в файлах
+     * @throws IOException если директорию не удалось создать
+     */
+    public RevocationIndexFiles(@Value("${revocation.index.directory}") String directory) throws IOException {
+        if (directory == null || directory.trim().isEmpty()) {
+            this.directory = null;
+        } else {
+            this.directory = Files.createDirectories(Paths.get(directory.trim()));
+            log.info("Индексы отозванных сертификатов хранятся в {}", this.directory.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Хранятся ли индексы в файлах.
+     *
+     * @return true, если задана директория
+     */
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Записать индекс издателя в новый файл и отобразить файл в память. Выполняет запись на диск
+     * с синхронизацией, поэтому вызывается не в потоках обработки событий.
+     *
+     * @param issuerKey идентификатор ключа издателя
+     * @param index     индекс
+     * @return индекс, читающий данные из файла
+     * @throws UncheckedIOException ошибка записи или отображения файла
+     */
+    public RevocationIndex write(String issuerKey, RevocationIndex index) {
+        String prefix = Hex.toHexString(issuerKey.getBytes(StandardCharsets.UTF_8)) + SEPARATOR;
+        try {
+            Path temp = Files.createTempFile(directory, prefix, TEMP_SUFFIX);
+            String tempName = temp.getFileName().toString();
+            Path target = directory.resolve(tempName.substring(0, tempName.length() - TEMP_SUFFIX.length()) + SUFFIX);
+            try {
+                writeFile(temp, index);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return map(target);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Ошибка записи индекса отозванных сертификатов издателя " + issuerKey, ex);
+        }
+    }
+
+    /**
+     * Удалить файл индекса, который больше не используется. Отображение остается действительным
+     * у тех, кто еще читает индекс. Для индекса только в памяти ничего не делает.
+     *
+     * @param index индекс, полученный из {@link #write(String, RevocationIndex)} или {@link #readAll()}
+     */
+    public void delete(RevocationIndex index) {
+        Path file = files.remove(index);
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                log.warn("Не удалось удалить файл индекса {}: {}", file, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Отобразить в память все файлы индексов. Поврежденные файлы пропускаются. Если у издателя несколько файлов
+     * (запись прервалась до удаления старой версии), остается самый новый, остальные удаляются.
+     *
+     * @return индексы по идентификаторам ключей издателей
+     */
+    public Map<String, RevocationIndex> readAll() {
+        Map<String, RevocationIndex> res = new HashMap<>();
+        if (directory != null) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                for (Path file : stream) {
+                    try {
+                        RevocationIndex index = map(file);
+                        RevocationIndex other = res.get(issuerKeyOf(file));
+                        boolean newer = other == null || index.getThisUpdate() > other.getThisUpdate();
+                        delete(newer ? other : index);
+                        if (newer) {
+                            res.put(issuerKeyOf(file), index);
+                        }
+                    } catch (Exception ex) {
+                        log.warn("Файл индекса {} пропущен: {}", file, ex.getMessage());
+                    }
+                }
+            } catch (IOException ex) {
+                log.error("Ошибка чтения директории индексов " + directory, ex);
+            }
+        }
+        return res;
+    }
+
+    private static void writeFile(Path file, RevocationIndex index) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = index.getBuffer();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    private RevocationIndex map(Path file) throws IOException {
+        RevocationIndex res;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // отображение остается действительным и после закрытия канала
+            res = RevocationIndex.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        files.put(res, file);
+        return res;
+    }
+
+    // имя файла: hex идентификатора до первой точки, затем версия (в файлах старого формата версии нет) и суффикс
+    private static String issuerKeyOf(Path file) {
+        String name = file.getFileName().toString();
+        return new String(Hex.decode(name.substring(0, name.indexOf(SEPARATOR))), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,231 @@
+package ru.gostmaster.revocation;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.gostmaster.cache.CertificateCache;
+import ru.gostmaster.cache.CrlCache;
+import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.storage.CRLStorage;
+import ru.gostmaster.storage.CertificateStorage;
+
+import java.io.UncheckedIOException;
+import java.security.cert.X509CRL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Индексы отозванных сертификатов по издателям (issuerKey). Индекс строится при загрузке CRL
+ * и только после проверки подписи CRL сертификатом издателя из хранилища.
+ * <p>
+ * Разностный список (DeltaCRLIndicator) объединяется в индексе с полным списком того же издателя, к которому
+ * относится: при загрузке любого из них индекс строится по самому новому полному списку и самому новому
+ * разностному к нему. Разделенные списки (с IssuingDistributionPoint) не индексируются: для таких издателей
+ * проверка идет через CRL целиком.
+ * <p>
+ * Если задана директория revocation.index.directory, индексы хранятся в файлах ({@link RevocationIndexFiles})
+ * и читаются из отображенной памяти; при старте индексы из файлов доступны сразу, а списки из хранилища
+ * индексируются заново, только если они новее файлов. Файл пишется в пуле boundedElastic до замены индекса,
+ * файл вытесненного индекса удаляется.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+public class RevocationIndexRegistry {
+
+    private final Map<String, RevocationIndex> indexes = new ConcurrentHashMap<>();
+
+    @Setter(onMethod_ = {@Autowired})
+    private CertificateStorage certificateStorage;
+    @Setter(onMethod_ = {@Autowired})
+    private CRLStorage crlStorage;
+    @Setter(onMethod_ = {@Autowired})
+    private CertificateCache certificateCache;
+    @Setter(onMethod_ = {@Autowired})
+    private CrlCache crlCache;
+    @Setter(onMethod_ = {@Autowired})
+    private RevocationIndexFiles indexFiles;
+
+    /**
+     * Построить индекс по CRL (вместе с полным или разностным списком к нему) и заменить им индекс издателя,
+     * если список не старее текущего.
+     *
+     * @param crl CRL из хранилища
+     * @return void
+     */
+    public Mono<Void> index(Crl crl) {
+        return Mono.justOrEmpty(crl.getIssuerKey())
+            .flatMap(issuerKey -> Mono.zip(certificateStorage.getCertificateChainForLeafKey(issuerKey),
+                crlStorage.getAllByIssuerKeys(Collections.singletonList(issuerKey)).collectList()))
+            .flatMap(tuple -> Mono.justOrEmpty(buildIndex(crl, tuple.getT1(), tuple.getT2())))
+            .filter(built -> isNewer(crl.getIssuerKey(), built))
+            // запись файла с синхронизацией диска - не в потоке, доставившем CRL
+            .flatMap(built -> Mono.fromRunnable(() -> install(crl.getIssuerKey(), store(crl.getIssuerKey(), built)))
+                .subscribeOn(Schedulers.boundedElastic()))
+            .onErrorResume(throwable -> {
+                log.debug("Не удалось построить индекс для CRL {}: {}", crl.getDownloadedFrom(), throwable.getMessage());
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    /**
+     * Получить действующий индекс издателя.
+     *
+     * @param issuerKey идентификатор ключа издателя
+     * @param time      момент проверки в миллисекундах
+     * @return индекс или null, если индекса нет или список устарел
+     */
+    public RevocationIndex getFreshIndex(String issuerKey, long time) {
+        RevocationIndex index = issuerKey == null ? null : indexes.get(issuerKey);
+        return index != null && index.isFreshAt(time) ? index : null;
+    }
+
+    /**
+     * Количество издателей, для которых построен индекс.
+     *
+     * @return количество
+     */
+    public int size() {
+        return indexes.size();
+    }
+
+    /**
+     * Строим индексы по сохраненным CRL при старте приложения, не дожидаясь обновления по расписанию.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        Map<String, RevocationIndex> stored = indexFiles.readAll();
+        stored.forEach(this::install);
+        log.info("Индексов отозванных сертификатов прочитано из файлов: {}", stored.size());
+        crlStorage.getAll()
+            .filter(this::isNewerThanIndex)
+            .flatMap(this::index)
+            .then()
+            .subscribe(null, throwable -> log.error("Ошибка построения индексов отозванных сертификатов", throwable),
+                () -> log.info("Индексы отозванных сертификатов построены. Издателей: {}", indexes.size()));
+    }
+
+    // индекс по списку или null, если его нельзя построить
+    private RevocationIndex buildIndex(Crl crl, List<Certificate> issuerChain, List<Crl> issuerCrls) {
+        RevocationIndex res = null;
+        X509CRL x509CRL = crlCache.get(crl);
+        boolean delta = crl.getBaseCrlNumber() != null || isDelta(x509CRL);
+        Crl base = delta ? findBase(crl, issuerCrls) : crl;
+        X509CRL x509Base = base == null ? null : crlCache.get(base);
+        if (x509CRL.getExtensionValue(Extension.issuingDistributionPoint.getId()) != null ||
+            (x509Base != null && x509Base.getExtensionValue(Extension.issuingDistributionPoint.getId()) != null)) {
+            log.debug("CRL {} разделенный, индекс не строится", crl.getDownloadedFrom());
+        } else if (x509Base == null) {
+            log.debug("Для разностного CRL {} нет полного списка, индекс не строится", crl.getDownloadedFrom());
+        } else if (!isSignedByIssuer(x509Base, base.getIssuerKey(), issuerChain)) {
+            log.debug("Подпись CRL {} не подтверждена сертификатом издателя", base.getDownloadedFrom());
+        } else {
+            Crl deltaCrl = findDelta(base, issuerCrls);
+            X509CRL x509Delta = deltaCrl == null ? null : crlCache.get(deltaCrl);
+            if (x509Delta != null && !isSignedByIssuer(x509Delta, deltaCrl.getIssuerKey(), issuerChain)) {
+                log.debug("Подпись разностного CRL {} не подтверждена сертификатом издателя", deltaCrl.getDownloadedFrom());
+                x509Delta = null;
+            }
+            res = RevocationIndex.build(x509Base, x509Delta);
+        }
+        return res;
+    }
+
+    private boolean isNewer(String issuerKey, RevocationIndex index) {
+        RevocationIndex current = indexes.get(issuerKey);
+        return current == null || index.getThisUpdate() >= current.getThisUpdate();
+    }
+
+    // замена индекса издателя: под блокировкой только сравнение дат, файл проигравшего индекса удаляется после
+    private void install(String issuerKey, RevocationIndex index) {
+        AtomicReference<RevocationIndex> obsolete = new AtomicReference<>();
+        indexes.compute(issuerKey, (key, current) -> {
+            boolean newer = current == null || index.getThisUpdate() >= current.getThisUpdate();
+            obsolete.set(newer ? current : index);
+            return newer ? index : current;
+        });
+        if (obsolete.get() != null) {
+            indexFiles.delete(obsolete.get());
+        }
+    }
+
+    private RevocationIndex store(String issuerKey, RevocationIndex index) {
+        RevocationIndex res = index;
+        if (indexFiles.isEnabled()) {
+            try {
+                res = indexFiles.write(issuerKey, index);
+            } catch (UncheckedIOException ex) {
+                log.warn("Индекс издателя {} остается в памяти: {}", issuerKey, ex.getMessage());
+            }
+        }
+        return res;
+    }
+
+    // самый новый полный список издателя, к которому относится разностный
+    private static Crl findBase(Crl delta, List<Crl> issuerCrls) {
+        Crl res = null;
+        for (Crl candidate : issuerCrls) {
+            if (candidate.getBaseCrlNumber() == null && candidate.getCrlNumber() != null && delta.getBaseCrlNumber() != null &&
+                candidate.getCrlNumber().compareTo(delta.getBaseCrlNumber()) >= 0 && isLater(candidate, res)) {
+                res = candidate;
+            }
+        }
+        return res;
+    }
+
+    // самый новый разностный список к полному, выпущенный после него
+    private static Crl findDelta(Crl base, List<Crl> issuerCrls) {
+        Crl res = null;
+        for (Crl candidate : issuerCrls) {
+            if (candidate.getBaseCrlNumber() != null && base.getCrlNumber() != null &&
+                candidate.getBaseCrlNumber().compareTo(base.getCrlNumber()) <= 0 && isLater(candidate, base) &&
+                isLater(candidate, res)) {
+                res = candidate;
+            }
+        }
+        return res;
+    }
+
+    private static boolean isLater(Crl crl, Crl other) {
+        return other == null || other.getThisUpdate() == null ||
+            (crl.getThisUpdate() != null && crl.getThisUpdate().after(other.getThisUpdate()));
+    }
+
+    private static boolean isDelta(X509CRL crl) {
+        return crl.getExtensionValue(Extension.deltaCRLIndicator.getId()) != null;
+    }
+
+    private boolean isNewerThanIndex(Crl crl) {
+        RevocationIndex current = crl.getIssuerKey() == null ? null : indexes.get(crl.getIssuerKey());
+        return current == null || crl.getThisUpdate() == null || crl.getThisUpdate().getTime() > current.getThisUpdate();
+    }
+
+    private boolean isSignedByIssuer(X509CRL crl, String issuerKey, List<Certificate> issuerChain) {
+        boolean res = false;
+        for (Certificate certificate : issuerChain) {
+            if (!res && issuerKey != null && issuerKey.equals(certificate.getSubjectKey())) {
+                try {
+                    crl.verify(certificateCache.get(certificate).getCertificate().getPublicKey(),
+                        BouncyCastleProvider.PROVIDER_NAME);
+                    res = true;
+                } catch (Exception ex) {
+                    log.trace("", ex);
+                }
+            }
+        }
+        return res;
+    }
+}
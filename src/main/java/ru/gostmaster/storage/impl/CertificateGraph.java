@@ -0,0 +1,76 @@
+package ru.gostmaster.storage.impl;
+
+import ru.gostmaster.data.cert.Certificate;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Неизменяемый снимок графа сертификатов (subjectKey -> issuerKey). Цепочки строятся так же, как $graphLookup
+ * в {@link MongoCertificateStorage}, и запоминаются.
+ *
+ * @author maksimgurin
+ */
+final class CertificateGraph {
+
+    private final Map<String, List<Certificate>> bySubjectKey;
+    private final Map<String, List<Certificate>> chains = new ConcurrentHashMap<>();
+    private final int size;
+
+    CertificateGraph(Collection<Certificate> certificates) {
+        Map<String, List<Certificate>> map = new HashMap<>();
+        for (Certificate certificate : certificates) {
+            if (certificate.getSubjectKey() != null) {
+                map.computeIfAbsent(certificate.getSubjectKey(), key -> new ArrayList<>()).add(certificate);
+            }
+        }
+        this.bySubjectKey = map;
+        this.size = certificates.size();
+    }
+
+    int size() {
+        return size;
+    }
+
+    List<Certificate> getChain(String subjectKey) {
+        List<Certificate> res;
+        if (subjectKey != null && bySubjectKey.containsKey(subjectKey)) {
+            // запоминаем только цепочки для известных ключей, чтобы произвольные запросы не раздували память
+            res = chains.computeIfAbsent(subjectKey, this::resolveChain);
+        } else {
+            res = Collections.emptyList();
+        }
+        return res;
+    }
+
+    private List<Certificate> resolveChain(String subjectKey) {
+        // обход в ширину от листа к корню, так же как $graphLookup: subjectKey -> issuerKey
+        Map<BigInteger, Certificate> chain = new LinkedHashMap<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> keys = new ArrayDeque<>();
+        keys.add(subjectKey);
+        while (!keys.isEmpty()) {
+            String key = keys.poll();
+            if (visited.add(key)) {
+                for (Certificate certificate : bySubjectKey.getOrDefault(key, Collections.emptyList())) {
+                    chain.putIfAbsent(certificate.getSn(), certificate);
+                    if (certificate.getIssuerKey() != null) {
+                        keys.add(certificate.getIssuerKey());
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(chain.values()));
+    }
+}
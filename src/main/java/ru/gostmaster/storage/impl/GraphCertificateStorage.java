@@ -0,0 +1,92 @@
+package ru.gostmaster.storage.impl;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.storage.CertificateStorage;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Хранилище сертификатов, которое строит цепочки по графу в памяти (subjectKey -> issuerKey).
+ * Граф строится по всем сертификатам из MongoDB и перестраивается после каждого обновления данных.
+ * Запись делегируется в MongoDB. Пока граф не построен, цепочки также берутся из MongoDB.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "mongo", matchIfMissing = true)
+public class GraphCertificateStorage implements CertificateStorage {
+
+    private final AtomicReference<CertificateGraph> graph = new AtomicReference<>();
+
+    @Setter(onMethod_ = {@Autowired})
+    private MongoCertificateStorage delegate;
+
+    @Override
+    public Mono<List<Certificate>> getCertificateChainForLeafKey(String subjectKey) {
+        CertificateGraph current = graph.get();
+        Mono<List<Certificate>> res;
+        if (current != null) {
+            res = Mono.fromSupplier(() -> current.getChain(subjectKey));
+        } else {
+            res = delegate.getCertificateChainForLeafKey(subjectKey);
+        }
+        return res;
+    }
+
+    @Override
+    public Mono<Void> saveAllCertificates(Flux<Certificate> certificateFlux) {
+        return delegate.saveAllCertificates(certificateFlux);
+    }
+
+    @Override
+    public Mono<Void> deleteAllTrusted() {
+        return delegate.deleteAllTrusted();
+    }
+
+    @Override
+    public Mono<Void> deleteAllIntermediate() {
+        return delegate.deleteAllIntermediate();
+    }
+
+    @Override
+    public Flux<Certificate> getAll() {
+        return delegate.getAll();
+    }
+
+    /**
+     * Перестроить граф по всем сертификатам из MongoDB.
+     *
+     * @return void
+     */
+    public Mono<Void> reload() {
+        return delegate.getAll()
+            .collectList()
+            .map(CertificateGraph::new)
+            .doOnNext(newGraph -> {
+                graph.set(newGraph);
+                log.info("Граф сертификатов перестроен. Сертификатов: {}", newGraph.size());
+            })
+            .then();
+    }
+
+    /**
+     * Строим граф при старте приложения, не дожидаясь обновления по расписанию.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reload().subscribe(null, throwable -> log.error("Ошибка построения графа сертификатов", throwable));
+    }
+}
@@ -0,0 +1,76 @@
+package ru.gostmaster.storage.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.storage.CertificateStorage;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Хранилище сертификатов в памяти процесса (storage.type=memory). Сертификаты хранятся по серийному номеру,
+ * как в {@link MongoCertificateStorage}. Цепочки строятся по неизменяемому снимку графа, который заменяется
+ * целиком после каждой записи, поэтому чтение не блокируется. Данные теряются при перезапуске.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "memory")
+public class MemoryCertificateStorage implements CertificateStorage {
+
+    private final Map<BigInteger, Certificate> certificates = new ConcurrentHashMap<>();
+    private volatile CertificateGraph graph = new CertificateGraph(certificates.values());
+
+    @Override
+    public Mono<List<Certificate>> getCertificateChainForLeafKey(String subjectKey) {
+        return Mono.fromSupplier(() -> graph.getChain(subjectKey));
+    }
+
+    @Override
+    public Mono<Void> saveAllCertificates(Flux<Certificate> certificateFlux) {
+        return certificateFlux
+            .doOnNext(this::put)
+            .then(Mono.fromRunnable(this::rebuildGraph));
+    }
+
+    @Override
+    public Mono<Void> deleteAllTrusted() {
+        return Mono.fromRunnable(() -> removeIf(Certificate::isTrusted));
+    }
+
+    @Override
+    public Mono<Void> deleteAllIntermediate() {
+        return Mono.fromRunnable(() -> removeIf(certificate -> !certificate.isTrusted()));
+    }
+
+    @Override
+    public Flux<Certificate> getAll() {
+        return Flux.defer(() -> Flux.fromIterable(certificates.values()));
+    }
+
+    private void put(Certificate certificate) {
+        // как и в MongoDB: существующий сертификат перезаписывается, но сохраняет признак доверенного
+        certificates.merge(certificate.getSn(), certificate, (existing, replacement) -> {
+            replacement.setTrusted(existing.isTrusted());
+            return replacement;
+        });
+    }
+
+    private synchronized void removeIf(Predicate<Certificate> predicate) {
+        certificates.values().removeIf(predicate);
+        rebuildGraph();
+    }
+
+    private synchronized void rebuildGraph() {
+        graph = new CertificateGraph(certificates.values());
+        log.debug("Граф сертификатов в памяти перестроен. Сертификатов: {}", graph.size());
+    }
+}
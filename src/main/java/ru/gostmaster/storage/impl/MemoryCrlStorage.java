@@ -0,0 +1,69 @@
+package ru.gostmaster.storage.impl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.storage.CRLStorage;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище CRL в памяти процесса (storage.type=memory). Как и в {@link MongoCrlStorage}, на каждую ссылку
+ * хранится один список, последний скачанный. Для поиска по издателю ведется отдельный индекс.
+ * Запись синхронизирована, чтение идет без блокировок. Данные теряются при перезапуске.
+ *
+ * @author maksimgurin
+ */
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "memory")
+public class MemoryCrlStorage implements CRLStorage {
+
+    private final Map<String, Crl> byUrl = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Crl>> byIssuerKey = new ConcurrentHashMap<>();
+
+    @Override
+    public Flux<Crl> getAllByIssuerKeys(List<String> issuerKeys) {
+        return Flux.fromIterable(new LinkedHashSet<>(issuerKeys))
+            .concatMapIterable(issuerKey -> byIssuerKey.getOrDefault(issuerKey, Collections.emptyMap()).values());
+    }
+
+    @Override
+    public Flux<Crl> getAll() {
+        return Flux.defer(() -> Flux.fromIterable(byUrl.values()));
+    }
+
+    @Override
+    public Mono<Void> deleteAllCrls() {
+        return Mono.fromRunnable(this::clear);
+    }
+
+    @Override
+    public Mono<Crl> save(Crl crl) {
+        return Mono.fromSupplier(() -> put(crl));
+    }
+
+    private synchronized Crl put(Crl crl) {
+        Crl previous = byUrl.put(crl.getDownloadedFrom(), crl);
+        if (previous != null && previous.getIssuerKey() != null) {
+            byIssuerKey.computeIfPresent(previous.getIssuerKey(), (key, crls) -> {
+                crls.remove(previous.getDownloadedFrom());
+                return crls.isEmpty() ? null : crls;
+            });
+        }
+        if (crl.getIssuerKey() != null) {
+            byIssuerKey.computeIfAbsent(crl.getIssuerKey(), key -> new ConcurrentHashMap<>()).put(crl.getDownloadedFrom(), crl);
+        }
+        return crl;
+    }
+
+    private synchronized void clear() {
+        byUrl.clear();
+        byIssuerKey.clear();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.gostmaster.storage.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.data.crl.CrlUrl;
+import ru.gostmaster.storage.CRLUrlStorage;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище ссылок на CRL в памяти процесса (storage.type=memory). Данные теряются при перезапуске.
+ *
+ * @author maksimgurin
+ */
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "memory")
+public class MemoryCrlUrlStorage implements CRLUrlStorage {
+
+    private final Map<String, CrlUrl> urls = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<Void> add(String url) {
+        return Mono.fromRunnable(() -> urls.putIfAbsent(url, new MemoryCrlUrl(url, null, null, null, null)));
+    }
+
+    @Override
+    public Flux<CrlUrl> getByUrl(String url) {
+        return Mono.fromSupplier(() -> urls.get(url)).flux();
+    }
+
+    @Override
+    public Flux<CrlUrl> getAll() {
+        return Flux.defer(() -> Flux.fromIterable(urls.values()));
+    }
+
+    @Override
+    public Mono<Void> update(Crl crl) {
+        return Mono.fromRunnable(() -> urls.computeIfPresent(crl.getDownloadedFrom(),
+            (url, crlUrl) -> new MemoryCrlUrl(url, crl.getThisUpdate(), crl.getNextUpdate(), crl.getEtag(),
+                crl.getLastModified())));
+    }
+
+    /**
+     * Неизменяемая ссылка на CRL.
+     *
+     * @author maksimgurin
+     */
+    @Getter
+    @AllArgsConstructor
+    private static final class MemoryCrlUrl implements CrlUrl {
+        private final String url;
+        private final Date currentUpdate;
+        private final Date nextUpdate;
+        private final String etag;
+        private final String lastModified;
+    }
+}
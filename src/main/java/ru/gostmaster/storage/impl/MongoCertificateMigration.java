@@ -0,0 +1,69 @@
+package ru.gostmaster.storage.impl;
+
+import com.mongodb.client.result.UpdateResult;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.gostmaster.model.MongoCertificateData;
+
+/**
+ * Перевод сертификатов, сохраненных в PEM (поле pemData), в DER (поле derData) с отпечатком SHA-256.
+ * Выполняется при старте приложения и обрабатывает только документы старого формата, поэтому повторный запуск
+ * ничего не делает. До завершения перевода документы старого формата читаются через PEM.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "mongo", matchIfMissing = true)
+public class MongoCertificateMigration {
+
+    @Setter(onMethod_ = {@Autowired})
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    /**
+     * Перевести все документы старого формата.
+     *
+     * @return количество переведенных документов
+     */
+    public Mono<Long> migrate() {
+        Query legacy = Query.query(Criteria.where(MongoCertificateData.F_PEM_DATA).exists(true));
+        legacy.fields().include(MongoCertificateData.F_ID).include(MongoCertificateData.F_PEM_DATA);
+        return reactiveMongoTemplate.find(legacy, MongoCertificateData.class)
+            .concatMap(cert -> Mono.fromCallable(cert::getDerData)
+                .flatMap(der -> reactiveMongoTemplate.updateFirst(
+                    Query.query(Criteria.where(MongoCertificateData.F_ID).is(cert.getId())
+                        .and(MongoCertificateData.F_PEM_DATA).exists(true)),
+                    new Update().set(MongoCertificateData.F_DER_DATA, der)
+                        .set(MongoCertificateData.F_THUMBPRINT, cert.getThumbprint())
+                        .unset(MongoCertificateData.F_PEM_DATA),
+                    MongoCertificateData.class))
+                .map(UpdateResult::getModifiedCount)
+                .onErrorResume(throwable -> {
+                    log.warn("Сертификат {} не переведен в DER: {}", cert.getId(), throwable.getMessage());
+                    return Mono.empty();
+                }))
+            .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Перевод при старте приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        migrate().subscribe(count -> {
+            if (count > 0) {
+                log.info("Сертификатов переведено из PEM в DER: {}", count);
+            }
+        }, throwable -> log.error("Ошибка перевода сертификатов в DER", throwable));
+    }
+}
@@ -3,10 +3,12 @@ package ru.gostmaster.storage.impl;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.GraphLookupOperation;
 import org.springframework.data.mongodb.core.aggregation.MatchOperation;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
@@ -15,8 +17,10 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.metrics.StorageMetrics;
 import ru.gostmaster.model.MongoCertificateData;
 import ru.gostmaster.storage.CertificateStorage;
+import ru.gostmaster.tracing.Tracer;
 import ru.gostmaster.util.CollectionsUtils;
 
 import java.util.List;
@@ -28,10 +32,15 @@ import java.util.function.Function;
  * @author maksimgurin 
  */
 @Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "mongo", matchIfMissing = true)
 @Slf4j
 public class MongoCertificateStorage implements CertificateStorage {
+
+    private static final String STORAGE = "mongo-certificate";
     
     private ReactiveMongoTemplate reactiveMongoTemplate;
+    private StorageMetrics storageMetrics;
+    private Tracer tracer;
     
     @Override
     public Mono<List<Certificate>> getCertificateChainForLeafKey(String subjectKey) {
@@ -42,14 +51,17 @@ public class MongoCertificateStorage implements CertificateStorage {
             .connectFrom(MongoCertificateData.F_ISSUER_KEY)
             .connectTo(MongoCertificateData.F_SUBJECT_KEY)
             .as(MongoCertificateData.F_CHAIN);
-        Aggregation aggregation = Aggregation.newAggregation(matchOperation, graphLookupOperation);
+        // сам найденный сертификат входит в chain, поэтому из корневого документа нужен только chain
+        ProjectionOperation projectionOperation = Aggregation.project(MongoCertificateData.F_CHAIN)
+            .andExclude(MongoCertificateData.F_ID);
+        Aggregation aggregation = Aggregation.newAggregation(matchOperation, graphLookupOperation, projectionOperation);
         
         Flux<MongoCertificateData> documentFlux = reactiveMongoTemplate.aggregate(aggregation, 
             MongoCertificateData.class, MongoCertificateData.class);
         
         Flux<Certificate> certificateFlux = documentFlux.flatMap(cert -> Flux.fromIterable(cert.getChain()));
-        return certificateFlux.collectList()
-            .map(certificates -> CollectionsUtils.makeUniqueList(certificates, Certificate::getSn));
+        return tracer.trace("mongo.certificate-chain", storageMetrics.time(STORAGE, "getCertificateChainForLeafKey",
+            certificateFlux.collectList().map(certificates -> CollectionsUtils.makeUniqueList(certificates, Certificate::getSn))));
     }
 
     @Override
@@ -64,36 +76,49 @@ public class MongoCertificateStorage implements CertificateStorage {
                     return saveIntermediateCertificate(certificate);
                 }
             }).sequential();
-        return savedCertFlux.then();
+        return storageMetrics.time(STORAGE, "saveAllCertificates", savedCertFlux.then());
     }
 
     @Override
     public Mono<Void> deleteAllTrusted() {
         Query query = Query.query(Criteria.where(MongoCertificateData.F_TRUSTED).is(true));
-        return reactiveMongoTemplate.remove(query, MongoCertificateData.class).then();
+        return storageMetrics.time(STORAGE, "deleteAllTrusted", reactiveMongoTemplate.remove(query, MongoCertificateData.class)
+            .then());
     }
 
     @Override
     public Mono<Void> deleteAllIntermediate() {
         Query query = Query.query(Criteria.where(MongoCertificateData.F_TRUSTED).is(false));
-        return reactiveMongoTemplate.remove(query, MongoCertificateData.class).then();
+        return storageMetrics.time(STORAGE, "deleteAllIntermediate", reactiveMongoTemplate.remove(query,
+            MongoCertificateData.class).then());
     }
 
     @Override
     public Flux<Certificate> getAll() {
-        return reactiveMongoTemplate.findAll(MongoCertificateData.class).map(Function.identity());
+        return storageMetrics.time(STORAGE, "getAll", reactiveMongoTemplate.findAll(MongoCertificateData.class)
+            .map(Function.identity()));
     }
 
     @Autowired
     public void setReactiveMongoTemplate(ReactiveMongoTemplate reactiveMongoTemplate) {
         this.reactiveMongoTemplate = reactiveMongoTemplate;
     }
+
+    @Autowired
+    public void setStorageMetrics(StorageMetrics storageMetrics) {
+        this.storageMetrics = storageMetrics;
+    }
+
+    @Autowired
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
     
     private Mono<Certificate> saveTrustedCertificate(Certificate mongoCertificateData) {
         // если находит серт с таким серийником - перезаписываем. Потому что новый - доверенный, 
         // и он должен сохранить как доверенный.
         Query query = Query.query(Criteria.where(MongoCertificateData.F_SN).is(mongoCertificateData.getSn()));
-        Update update = Update.fromDocument(toDocument(mongoCertificateData), MongoCertificateData.F_TRUSTED)
+        Update update = toUpdate(mongoCertificateData)
             .setOnInsert(MongoCertificateData.F_TRUSTED, true);
         return reactiveMongoTemplate.upsert(query, update, MongoCertificateData.class)
             .thenReturn(mongoCertificateData);
@@ -102,15 +127,17 @@ public class MongoCertificateStorage implements CertificateStorage {
     private Mono<Certificate> saveIntermediateCertificate(Certificate mongoCertificateData) {
         // если находим сертификат с таким серийником - перезаписываем все, кроме поля TRUSTED
         Query query = Query.query(Criteria.where(MongoCertificateData.F_SN).is(mongoCertificateData.getSn()));
-        Update update = Update.fromDocument(toDocument(mongoCertificateData), MongoCertificateData.F_TRUSTED)
+        Update update = toUpdate(mongoCertificateData)
             .setOnInsert(MongoCertificateData.F_TRUSTED, mongoCertificateData.isTrusted());
         return reactiveMongoTemplate.upsert(query, update, MongoCertificateData.class)
             .thenReturn(mongoCertificateData);
     }
     
-    private Document toDocument(Object object) {
+    private Update toUpdate(Certificate certificate) {
         Document document = new Document();
-        reactiveMongoTemplate.getConverter().write(object, document);
-        return document;
+        reactiveMongoTemplate.getConverter().write(certificate, document);
+        // сертификат пишется в DER, PEM документа старого формата больше не нужен
+        document.remove(MongoCertificateData.F_PEM_DATA);
+        return Update.fromDocument(document, MongoCertificateData.F_TRUSTED).unset(MongoCertificateData.F_PEM_DATA);
     }
 }
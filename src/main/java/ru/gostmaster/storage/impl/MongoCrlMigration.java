@@ -0,0 +1,67 @@
+package ru.gostmaster.storage.impl;
+
+import com.mongodb.client.result.UpdateResult;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.gostmaster.model.MongoCrlData;
+
+/**
+ * Перевод CRL, сохраненных в PEM (поле pemData), в DER (поле derData). Выполняется при старте приложения
+ * и обрабатывает только документы старого формата, поэтому повторный запуск ничего не делает.
+ * До завершения перевода документы старого формата читаются через PEM.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "mongo", matchIfMissing = true)
+public class MongoCrlMigration {
+
+    @Setter(onMethod_ = {@Autowired})
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    /**
+     * Перевести все документы старого формата.
+     *
+     * @return количество переведенных документов
+     */
+    public Mono<Long> migrate() {
+        Query legacy = Query.query(Criteria.where(MongoCrlData.F_PEM_DATA).exists(true));
+        legacy.fields().include(MongoCrlData.F_DONWLOADED_FROM).include(MongoCrlData.F_PEM_DATA);
+        return reactiveMongoTemplate.find(legacy, MongoCrlData.class)
+            .concatMap(crl -> Mono.fromCallable(crl::getDerData)
+                .flatMap(der -> reactiveMongoTemplate.updateFirst(
+                    Query.query(Criteria.where(MongoCrlData.F_DONWLOADED_FROM).is(crl.getDownloadedFrom())
+                        .and(MongoCrlData.F_PEM_DATA).exists(true)),
+                    new Update().set(MongoCrlData.F_DER_DATA, der).unset(MongoCrlData.F_PEM_DATA),
+                    MongoCrlData.class))
+                .map(UpdateResult::getModifiedCount)
+                .onErrorResume(throwable -> {
+                    log.warn("CRL {} не переведен в DER: {}", crl.getDownloadedFrom(), throwable.getMessage());
+                    return Mono.empty();
+                }))
+            .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Перевод при старте приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        migrate().subscribe(count -> {
+            if (count > 0) {
+                log.info("CRL переведено из PEM в DER: {}", count);
+            }
+        }, throwable -> log.error("Ошибка перевода CRL в DER", throwable));
+    }
+}
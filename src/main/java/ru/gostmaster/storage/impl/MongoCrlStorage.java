@@ -3,6 +3,8 @@ package ru.gostmaster.storage.impl;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -11,46 +13,74 @@ import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.metrics.StorageMetrics;
 import ru.gostmaster.model.MongoCrlData;
 import ru.gostmaster.storage.CRLStorage;
+import ru.gostmaster.util.CompressionCodec;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Function;
 
 /**
- * Реализация хранилища CRL в MongoDB.
+ * Реализация хранилища CRL в MongoDB. Списки размером от storage.crl.compression-threshold байт
+ * сохраняются сжатыми алгоритмом storage.crl.compression.
  * 
  * @author maksimgurin 
  */
 @Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "mongo", matchIfMissing = true)
 @Slf4j
 public class MongoCrlStorage implements CRLStorage {
+
+    private static final String STORAGE = "mongo-crl";
+
+    /**
+     * Поля, которых может не быть в новой версии списка.
+     */
+    private static final List<String> OPTIONAL_FIELDS = Arrays.asList(MongoCrlData.F_NEXT_UPDATE, MongoCrlData.F_CRL_NUMBER,
+        MongoCrlData.F_BASE_CRL_NUMBER, MongoCrlData.F_DELTA_CRL_URLS, MongoCrlData.F_ETAG, MongoCrlData.F_LAST_MODIFIED);
     
     private ReactiveMongoTemplate reactiveMongoTemplate;
+    private StorageMetrics storageMetrics;
+
+    /**
+     * Алгоритм сжатия хранимых списков, пусто - не сжимать.
+     */
+    @Value("${storage.crl.compression}")
+    private CompressionCodec compression;
+
+    /**
+     * Минимальный размер DER в байтах, начиная с которого список сжимается.
+     */
+    @Value("${storage.crl.compression-threshold}")
+    private int compressionThreshold;
     
     @Override
     public Mono<Void> deleteAllCrls() {
         Query query = Query.query(new Criteria());
-        return reactiveMongoTemplate.remove(query, MongoCrlData.class).then();
+        return storageMetrics.time(STORAGE, "deleteAllCrls", reactiveMongoTemplate.remove(query, MongoCrlData.class).then());
     }
 
     @Override
     public Mono<Crl> save(Crl crl) {
         // сохраняем. если уже есть скачанный с такого адреса - перетираем.
-        Update update = Update.fromDocument(toDocument(crl));
         Query query = Query.query(Criteria.where(MongoCrlData.F_DONWLOADED_FROM).is(crl.getDownloadedFrom()));
-        return reactiveMongoTemplate.upsert(query, update, MongoCrlData.class).thenReturn(crl);
+        return storageMetrics.time(STORAGE, "save", Mono.defer(() -> reactiveMongoTemplate.upsert(query, toUpdate(crl),
+            MongoCrlData.class)).thenReturn(crl));
     }
     
     @Override
     public Flux<Crl> getAllByIssuerKeys(List<String> issuerKeys) {
         Query query = Query.query(Criteria.where(MongoCrlData.F_ISSUER_KEY).in(issuerKeys));
-        return reactiveMongoTemplate.find(query, MongoCrlData.class).map(Function.identity());
+        return storageMetrics.time(STORAGE, "getAllByIssuerKeys", reactiveMongoTemplate.find(query, MongoCrlData.class)
+            .map(Function.identity()));
     }
 
     @Override
     public Flux<Crl> getAll() {
-        return reactiveMongoTemplate.findAll(MongoCrlData.class).map(Function.identity());
+        return storageMetrics.time(STORAGE, "getAll", reactiveMongoTemplate.findAll(MongoCrlData.class)
+            .map(Function.identity()));
     }
 
     @Autowired
@@ -58,9 +88,31 @@ public class MongoCrlStorage implements CRLStorage {
         this.reactiveMongoTemplate = reactiveMongoTemplate;
     }
 
-    private Document toDocument(Object object) {
+    @Autowired
+    public void setStorageMetrics(StorageMetrics storageMetrics) {
+        this.storageMetrics = storageMetrics;
+    }
+
+    private Update toUpdate(Crl crl) {
+        // DER получаем до записи документа: сжатый список, прочитанный из хранилища, при этом распаковывается
+        byte[] der = crl.getDerData();
         Document document = new Document();
-        reactiveMongoTemplate.getConverter().write(object, document);
-        return document;
+        reactiveMongoTemplate.getConverter().write(crl, document);
+        // PEM старого формата удаляем: список хранится только в DER
+        document.remove(MongoCrlData.F_PEM_DATA);
+        Update update = Update.fromDocument(document).unset(MongoCrlData.F_PEM_DATA);
+        // конвертер не пишет пустые поля, а $set их не трогает: значения от прошлой загрузки по этой ссылке удаляем
+        for (String field : OPTIONAL_FIELDS) {
+            if (!document.containsKey(field)) {
+                update.unset(field);
+            }
+        }
+        if (compression != null && der != null && der.length >= compressionThreshold) {
+            update.set(MongoCrlData.F_DER_DATA, compression.compress(der))
+                .set(MongoCrlData.F_COMPRESSION, compression.name());
+        } else {
+            update.unset(MongoCrlData.F_COMPRESSION);
+        }
+        return update;
     }
 }
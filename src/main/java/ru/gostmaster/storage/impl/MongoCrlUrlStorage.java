@@ -2,6 +2,7 @@ package ru.gostmaster.storage.impl;
 
 import lombok.Setter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -22,6 +23,7 @@ import java.util.function.Function;
  * @author maksimgurin
  */
 @Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "mongo", matchIfMissing = true)
 public class MongoCrlUrlStorage implements CRLUrlStorage {
 
     @Setter(onMethod_ = {@Autowired})
@@ -52,7 +54,9 @@ public class MongoCrlUrlStorage implements CRLUrlStorage {
     public Mono<Void> update(Crl crl) {
         Query query = Query.query(Criteria.where(MongoCrlUrlData.F_URL).is(crl.getDownloadedFrom()));
         Update update = new Update().set(MongoCrlUrlData.F_CURRENT_UPDATE, crl.getThisUpdate())
-            .set(MongoCrlUrlData.F_NEXT_UPDATE, crl.getNextUpdate());
+            .set(MongoCrlUrlData.F_NEXT_UPDATE, crl.getNextUpdate())
+            .set(MongoCrlUrlData.F_ETAG, crl.getEtag())
+            .set(MongoCrlUrlData.F_LAST_MODIFIED, crl.getLastModified());
         return reactiveMongoTemplate.updateFirst(query, update, MongoCrlUrlData.class).then();
     }
 }
@@ -0,0 +1,54 @@
+package ru.gostmaster.tracing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Локальный сборщик интервалов: хранит последние завершенные интервалы в памяти, самые старые вытесняются.
+ *
+ * @author maksimgurin
+ */
+@Component
+public class InMemorySpanCollector implements SpanExporter {
+
+    private final int maxSpans;
+    private final Deque<Span> spans = new ArrayDeque<>();
+
+    /**
+     * Конструктор.
+     *
+     * @param maxSpans сколько последних интервалов хранить
+     */
+    public InMemorySpanCollector(@Value("${tracing.collector.max-spans}") int maxSpans) {
+        this.maxSpans = maxSpans;
+    }
+
+    @Override
+    public synchronized void export(Span span) {
+        if (spans.size() >= maxSpans) {
+            spans.pollFirst();
+        }
+        spans.addLast(span);
+    }
+
+    /**
+     * Получить сохраненные интервалы, от старых к новым.
+     *
+     * @param filter условие отбора
+     * @return интервалы
+     */
+    public List<Span> getSpans(Predicate<Span> filter) {
+        List<Span> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(spans);
+        }
+        return snapshot.stream().filter(filter).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,70 @@
+package ru.gostmaster.tracing;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Интервал трассировки: одна операция в рамках трассы. Родительский интервал передается в контексте Reactor.
+ *
+ * @author maksimgurin
+ */
+@Getter
+public class Span {
+
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final Map<String, String> tags;
+
+    /**
+     * Начало в микросекундах от эпохи.
+     */
+    private final long startMicros;
+
+    /**
+     * Длительность в микросекундах, заполняется при завершении.
+     */
+    private volatile long durationMicros;
+
+    /**
+     * Исход: success, error или cancelled.
+     */
+    private volatile String outcome;
+
+    /**
+     * Сообщение ошибки или null.
+     */
+    private volatile String error;
+
+    @Getter(AccessLevel.NONE)
+    private final long startNanos;
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    Span(String traceId, String spanId, String parentSpanId, String name, Map<String, String> tags) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.tags = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+        this.startMicros = System.currentTimeMillis() * 1000L;
+        this.startNanos = System.nanoTime();
+    }
+
+    boolean finish(String finishOutcome, Throwable throwable) {
+        boolean res = finished.compareAndSet(false, true);
+        if (res) {
+            this.durationMicros = (System.nanoTime() - startNanos) / 1000L;
+            this.error = throwable == null ? null : String.valueOf(throwable.getMessage());
+            this.outcome = finishOutcome;
+        }
+        return res;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.gostmaster.tracing;
+
+/**
+ * Получатель завершенных интервалов трассировки.
+ *
+ * @author maksimgurin
+ */
+public interface SpanExporter {
+
+    /**
+     * Передать завершенный интервал. Вызывается в потоке, в котором завершилась операция, поэтому не должен блокировать.
+     *
+     * @param span интервал
+     */
+    void export(Span span);
+}
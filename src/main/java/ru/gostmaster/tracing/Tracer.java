@@ -0,0 +1,148 @@
+package ru.gostmaster.tracing;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.Context;
+import ru.gostmaster.metrics.MetricsOutcome;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Трассировка реактивных операций. Текущий интервал хранится в контексте Reactor под ключом {@link Span},
+ * поэтому вложенные операции автоматически становятся дочерними независимо от потока, в котором выполняются.
+ * Операция без родителя начинает новую трассу. Завершенные интервалы передаются всем {@link SpanExporter}.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+public class Tracer {
+
+    private static final String HEX_FORMAT = "%016x";
+
+    @Setter(onMethod_ = {@Autowired})
+    private List<SpanExporter> exporters;
+
+    @Value("${tracing.enabled}")
+    private boolean enabled;
+
+    /**
+     * Выполнить операцию в отдельном интервале.
+     *
+     * @param name имя интервала
+     * @param mono операция
+     * @param <T>  результат
+     * @return та же операция
+     */
+    public <T> Mono<T> trace(String name, Mono<T> mono) {
+        return trace(name, Collections.emptyMap(), mono);
+    }
+
+    /**
+     * Выполнить операцию в отдельном интервале.
+     *
+     * @param name имя интервала
+     * @param tags теги интервала
+     * @param mono операция
+     * @param <T>  результат
+     * @return та же операция
+     */
+    public <T> Mono<T> trace(String name, Map<String, String> tags, Mono<T> mono) {
+        return enabled ? Mono.subscriberContext().flatMap(context -> {
+            Span span = start(name, tags, getCurrentSpan(context));
+            return mono
+                .doOnError(throwable -> finish(span, SignalType.ON_ERROR, throwable))
+                .doFinally(signalType -> finish(span, signalType, null))
+                .subscriberContext(ctx -> ctx.put(Span.class, span));
+        }) : mono;
+    }
+
+    /**
+     * Выполнить операцию в отдельном интервале.
+     *
+     * @param name имя интервала
+     * @param flux операция
+     * @param <T>  результат
+     * @return та же операция
+     */
+    public <T> Flux<T> trace(String name, Flux<T> flux) {
+        return trace(name, Collections.emptyMap(), flux);
+    }
+
+    /**
+     * Выполнить операцию в отдельном интервале.
+     *
+     * @param name имя интервала
+     * @param tags теги интервала
+     * @param flux операция
+     * @param <T>  результат
+     * @return та же операция
+     */
+    public <T> Flux<T> trace(String name, Map<String, String> tags, Flux<T> flux) {
+        return enabled ? Mono.subscriberContext().flatMapMany(context -> {
+            Span span = start(name, tags, getCurrentSpan(context));
+            return flux
+                .doOnError(throwable -> finish(span, SignalType.ON_ERROR, throwable))
+                .doFinally(signalType -> finish(span, signalType, null))
+                .subscriberContext(ctx -> ctx.put(Span.class, span));
+        }) : flux;
+    }
+
+    /**
+     * Начать корневой интервал, продолжающий внешнюю трассу (например, из заголовка запроса).
+     *
+     * @param name         имя интервала
+     * @param tags         теги интервала
+     * @param traceId      идентификатор внешней трассы или null для новой трассы
+     * @param parentSpanId идентификатор внешнего родительского интервала или null
+     * @return интервал или null, если трассировка выключена
+     */
+    public Span startRoot(String name, Map<String, String> tags, String traceId, String parentSpanId) {
+        Span span = null;
+        if (enabled) {
+            span = traceId == null ? start(name, tags, null) : new Span(traceId, newId(), parentSpanId, name, tags);
+        }
+        return span;
+    }
+
+    /**
+     * Завершить интервал и передать его получателям. Повторные вызовы игнорируются.
+     *
+     * @param span       интервал
+     * @param signalType сигнал завершения операции
+     * @param throwable  ошибка или null
+     */
+    public void finish(Span span, SignalType signalType, Throwable throwable) {
+        if (span != null && span.finish(MetricsOutcome.of(signalType), throwable)) {
+            for (SpanExporter exporter : exporters) {
+                try {
+                    exporter.export(span);
+                } catch (Exception ex) {
+                    log.debug("Ошибка выгрузки интервала", ex);
+                }
+            }
+        }
+    }
+
+    private static Span getCurrentSpan(Context context) {
+        return context.getOrDefault(Span.class, null);
+    }
+
+    private static Span start(String name, Map<String, String> tags, Span parent) {
+        return parent == null ? new Span(newId() + newId(), newId(), null, name, tags) :
+            new Span(parent.getTraceId(), newId(), parent.getSpanId(), name, tags);
+    }
+
+    private static String newId() {
+        return String.format(HEX_FORMAT, ThreadLocalRandom.current().nextLong());
+    }
+}
@@ -0,0 +1,52 @@
+package ru.gostmaster.tracing;
+
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Корневой интервал для каждого HTTP-запроса. Внешняя трасса продолжается по заголовку W3C traceparent,
+ * идентификаторы интервала запроса возвращаются в том же заголовке ответа.
+ *
+ * @author maksimgurin
+ */
+@Component
+public class TracingWebFilter implements WebFilter {
+
+    private static final String TRACEPARENT = "traceparent";
+    private static final Pattern TRACEPARENT_PATTERN = Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-[0-9a-f]{2}");
+
+    @Setter(onMethod_ = {@Autowired})
+    private Tracer tracer;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String header = request.getHeaders().getFirst(TRACEPARENT);
+        Matcher matcher = header == null ? null : TRACEPARENT_PATTERN.matcher(header.trim());
+        boolean continued = matcher != null && matcher.matches();
+        Span span = tracer.startRoot("http " + request.getMethodValue() + " " + request.getPath().value(),
+            Collections.singletonMap("path", request.getPath().value()),
+            continued ? matcher.group(1) : null, continued ? matcher.group(2) : null);
+
+        Mono<Void> res = chain.filter(exchange);
+        if (span != null) {
+            exchange.getResponse().getHeaders().set(TRACEPARENT, "00-" + span.getTraceId() + "-" + span.getSpanId() + "-01");
+            res = res
+                .doOnError(throwable -> tracer.finish(span, SignalType.ON_ERROR, throwable))
+                .doFinally(signalType -> tracer.finish(span, signalType, null))
+                .subscriberContext(context -> context.put(Span.class, span));
+        }
+        return res;
+    }
+}
@@ -6,14 +6,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
+import ru.gostmaster.cache.ChainValidationCache;
+import ru.gostmaster.cache.CrlCache;
+import ru.gostmaster.data.crl.Crl;
 import ru.gostmaster.data.crl.CrlUrl;
 import ru.gostmaster.reactor.CrlFluxHelper;
+import ru.gostmaster.revocation.RevocationIndexRegistry;
 import ru.gostmaster.storage.CRLStorage;
 import ru.gostmaster.storage.CRLUrlStorage;
+import ru.gostmaster.tracing.Tracer;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Обновляем CRL на основании CRLUrlStorage.
+ * Обновляем CRL по ссылкам из CRLUrlStorage. Когда обновлять каждую ссылку, решает {@link CrlRefreshScheduler}.
  *
  * @author maksimgurin
  */
@@ -27,28 +34,35 @@ public class CRLUpdater {
     private CrlFluxHelper crlFluxHelper;
     @Setter(onMethod_ = {@Autowired})
     private CRLStorage crlStorage;
+    @Setter(onMethod_ = {@Autowired})
+    private CrlCache crlCache;
+    @Setter(onMethod_ = {@Autowired})
+    private RevocationIndexRegistry revocationIndexRegistry;
+    @Setter(onMethod_ = {@Autowired})
+    private ChainValidationCache chainValidationCache;
+    @Setter(onMethod_ = {@Autowired})
+    private Tracer tracer;
 
     /**
-     * Обновляем CRL на основании CRLUrlStorage.
-     *ч
-     * @return void
+     * Скачать и сохранить CRL по ссылке: сохраняем в хранилище, обновляем кэш и индекс отзыва,
+     * сбрасываем проверки цепочек и отмечаем ссылку как обновленную.
+     *
+     * @param crlUrl ссылка на CRL
+     * @return сохраненный CRL; пустой, если список на сервере не изменился
      */
-    public Mono<Void> updateCrls() {
-        Flux<CrlUrl> urls = crlUrlStorage.getAll();
-//        Flux<CrlUrl> urls = crlUrlStorage.getAll().filter(crlUrl ->
-//            (crlUrl.getLastUpdate() == null && crlUrl.getNextUpdate() == null) ||
-//                crlUrl.getNextUpdate().compareTo(new Date()) < 0
-//        );
+    public Mono<Crl> updateCrl(CrlUrl crlUrl) {
+        return crlFluxHelper.getCrlFromUrl(crlUrl)
+            .flatMap(crl -> tracer.trace("crl.save", Collections.singletonMap("url", crl.getDownloadedFrom()), crlStorage.save(crl)))
+            .doOnNext(crl -> crlCache.refresh(crl))
+            .flatMap(crl -> revocationIndexRegistry.index(crl).thenReturn(crl))
+            .doOnNext(crl -> chainValidationCache.crlUpdated(crl))
+            .flatMap(crl -> addDeltaCrlUrls(crl).thenReturn(crl))
+            .flatMap(crl -> crlUrlStorage.update(crl).thenReturn(crl));
+    }
 
-        Mono<Void> res = urls.parallel().runOn(Schedulers.newParallel("crl-download-thread-pool"))
-            .flatMap(crlUrl -> crlFluxHelper.getCrlFromUrl(crlUrl.getUrl()))
-            .sequential()
-            .onErrorContinue((throwable, o) -> log.debug("Error downloading from " + o, throwable.getMessage()))
-            .parallel()
-            .runOn(Schedulers.newElastic("crl-save-thread-pool"))
-            .flatMap(crl -> crlStorage.save(crl))
-            .flatMap(crl -> crlUrlStorage.update(crl))
-            .then();
-        return res;
+    // ссылки на разностные списки (FreshestCRL) добавляются к ссылкам на CRL и ставятся в очередь обновления
+    private Mono<Void> addDeltaCrlUrls(Crl crl) {
+        List<String> urls = crl.getDeltaCrlUrls();
+        return urls == null ? Mono.empty() : Flux.fromIterable(urls).flatMap(crlUrlStorage::add).then();
     }
 } 
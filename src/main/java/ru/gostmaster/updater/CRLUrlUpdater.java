@@ -5,7 +5,9 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.gostmaster.loader.CRLUrlLoader;
 import ru.gostmaster.storage.CRLUrlStorage;
+import ru.gostmaster.tracing.Tracer;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -18,16 +20,19 @@ import java.util.stream.Collectors;
 public class CRLUrlUpdater {
     private List<CRLUrlLoader> crlUrlLoaders;
     private CRLUrlStorage crlUrlStorage;
+    private Tracer tracer;
 
     /**
      * Конструктор.
      *
      * @param crlUrlLoaders список загрузчиков CRL
      * @param crlUrlStorage хранилище ссылок на CRL
+     * @param tracer        трассировка
      */
-    public CRLUrlUpdater(List<CRLUrlLoader> crlUrlLoaders, CRLUrlStorage crlUrlStorage) {
+    public CRLUrlUpdater(List<CRLUrlLoader> crlUrlLoaders, CRLUrlStorage crlUrlStorage, Tracer tracer) {
         this.crlUrlLoaders = crlUrlLoaders;
         this.crlUrlStorage = crlUrlStorage;
+        this.tracer = tracer;
     }
 
     /**
@@ -42,7 +47,9 @@ public class CRLUrlUpdater {
     }
 
     private Flux<String> loadFromAllLoaders() {
-        List<Flux<String>> allCrlFlux = crlUrlLoaders.stream().map(CRLUrlLoader::loadCrlUrls)
+        List<Flux<String>> allCrlFlux = crlUrlLoaders.stream()
+            .map(loader -> tracer.trace("loader", Collections.singletonMap("loader", loader.getClass().getSimpleName()),
+                loader.loadCrlUrls()))
             .collect(Collectors.toList());
         Flux<String> certificateFlux = Flux.merge(allCrlFlux);
         return certificateFlux;
@@ -4,11 +4,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.gostmaster.cache.CertificateCache;
 import ru.gostmaster.data.cert.Certificate;
 import ru.gostmaster.loader.CertificateLoader;
 import ru.gostmaster.storage.CRLUrlStorage;
 import ru.gostmaster.storage.CertificateStorage;
+import ru.gostmaster.tracing.Tracer;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -24,6 +27,8 @@ public class CertificateUpdater {
     private List<CertificateLoader> intermediateCertificateLoaders;
     private CertificateStorage certificateStorage;
     private CRLUrlStorage crlUrlStorage;
+    private CertificateCache certificateCache;
+    private Tracer tracer;
 
     /**
      * Конструктор.
@@ -31,15 +36,21 @@ public class CertificateUpdater {
      * @param trustedCertificateLoaders      загрузчики доверенных сертификатов
      * @param intermediateCertificateLoaders загрузчики промежуточных сертификатов
      * @param certificateStorage             хранилище сертификатов
+     * @param certificateCache               кэш разобранных сертификатов
+     * @param tracer                         трассировка
      */
     public CertificateUpdater(List<CertificateLoader> trustedCertificateLoaders,
                               List<CertificateLoader> intermediateCertificateLoaders,
                               CertificateStorage certificateStorage,
-                              CRLUrlStorage crlUrlStorage) {
+                              CRLUrlStorage crlUrlStorage,
+                              CertificateCache certificateCache,
+                              Tracer tracer) {
         this.trustedCertificateLoaders = trustedCertificateLoaders;
         this.intermediateCertificateLoaders = intermediateCertificateLoaders;
         this.certificateStorage = certificateStorage;
         this.crlUrlStorage = crlUrlStorage;
+        this.certificateCache = certificateCache;
+        this.tracer = tracer;
     }
 
     /**
@@ -54,8 +65,9 @@ public class CertificateUpdater {
             .flatMap(s -> crlUrlStorage.add(s))
             .then();
 
-        // не будем удалять сертификаты. будем их перетирать.
-        return certificateStorage.saveAllCertificates(certificatesToLoad)
+        // не будем удалять сертификаты. будем их перетирать. перезаписанные убираем из кэша.
+        return tracer.trace("certificate.save-all",
+            certificateStorage.saveAllCertificates(certificatesToLoad.doOnNext(certificateCache::invalidate)))
             .then(savedCrls);
     }
 
@@ -69,14 +81,15 @@ public class CertificateUpdater {
             .filter(StringUtils::hasText)
             .flatMap(s -> crlUrlStorage.add(s))
             .then();
-        // не будем удалять сертификаты. будем их перетирать.
-        return certificateStorage.saveAllCertificates(certificatesToLoad)
+        // не будем удалять сертификаты. будем их перетирать. перезаписанные убираем из кэша.
+        return tracer.trace("certificate.save-all",
+            certificateStorage.saveAllCertificates(certificatesToLoad.doOnNext(certificateCache::invalidate)))
             .then(savedCrls);
     }
     
     private Flux<Certificate> loadIntermediateCertificates() {
         List<Flux<Certificate>> allIntermCers = intermediateCertificateLoaders
-            .stream().map(CertificateLoader::loadCertificates).collect(Collectors.toList());
+            .stream().map(this::loadCertificates).collect(Collectors.toList());
         return Flux.merge(allIntermCers)
             .map(certificate -> {
                 certificate.setTrusted(false);
@@ -84,9 +97,14 @@ public class CertificateUpdater {
             });
     }
 
+    private Flux<Certificate> loadCertificates(CertificateLoader loader) {
+        return tracer.trace("loader", Collections.singletonMap("loader", loader.getClass().getSimpleName()),
+            loader.loadCertificates());
+    }
+
     private Flux<Certificate> loadTrustedCertificates() {
         List<Flux<Certificate>> allTrustedCerts = trustedCertificateLoaders
-            .stream().map(CertificateLoader::loadCertificates).collect(Collectors.toList());
+            .stream().map(this::loadCertificates).collect(Collectors.toList());
         return Flux.merge(allTrustedCerts)
             .map(certificate -> {
                 certificate.setTrusted(true);
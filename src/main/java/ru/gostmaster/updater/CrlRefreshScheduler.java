@@ -0,0 +1,223 @@
+package ru.gostmaster.updater;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.gostmaster.data.crl.Crl;
+import ru.gostmaster.storage.CRLUrlStorage;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Планировщик обновления CRL. Вместо скачивания всех списков разом каждая ссылка стоит в очереди с приоритетом
+ * по времени следующего скачивания: незадолго (crl.refresh.lead-minutes) до nextUpdate скачанного списка
+ * со случайным сдвигом до crl.refresh.spread-minutes, чтобы списки с одинаковым nextUpdate не качались одновременно.
+ * Раз в crl.refresh.tick-ms наступившие ссылки скачиваются, одновременно - не больше crl.refresh.concurrency.
+ * <p>
+ * Ссылка без nextUpdate обновляется раз в crl.refresh.default-interval-hours. Если список не скачался
+ * или еще не обновлен на сервере, повтор идет через crl.refresh.retry-minutes, при повторных ошибках
+ * интервал удваивается, но не больше crl.refresh.default-interval-hours.
+ * <p>
+ * Ссылки попадают в очередь из хранилища при старте и после обновления данных ({@link #reload()}),
+ * ссылки на разностные списки - сразу после скачивания полного списка.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+public class CrlRefreshScheduler {
+
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    // состояние очереди изменяется только под блокировкой this
+    private final PriorityQueue<ScheduledUrl> queue = new PriorityQueue<>();
+    private final Map<String, ScheduledUrl> scheduled = new HashMap<>();
+    private final Set<String> running = new HashSet<>();
+    private final Scheduler refreshScheduler = Schedulers.newElastic("crl-refresh-thread-pool");
+
+    @Setter(onMethod_ = {@Autowired})
+    private CRLUrlStorage crlUrlStorage;
+
+    @Setter(onMethod_ = {@Autowired})
+    private CRLUpdater crlUpdater;
+
+    @Value("${crl.refresh.concurrency}")
+    private int concurrency;
+
+    @Value("${crl.refresh.lead-minutes}")
+    private long leadMinutes;
+
+    @Value("${crl.refresh.spread-minutes}")
+    private long spreadMinutes;
+
+    @Value("${crl.refresh.retry-minutes}")
+    private long retryMinutes;
+
+    @Value("${crl.refresh.default-interval-hours}")
+    private long defaultIntervalHours;
+
+    /**
+     * Поставить в очередь все ссылки из хранилища. Ссылки, которые уже стоят в очереди или скачиваются, не переносятся.
+     * Ссылки, которые еще не скачивались или у которых наступил срок, скачиваются при ближайшей проверке очереди.
+     *
+     * @return void
+     */
+    public Mono<Void> reload() {
+        return crlUrlStorage.getAll()
+            .doOnNext(crlUrl -> schedule(crlUrl.getUrl(), dueAt(crlUrl.getCurrentUpdate(), crlUrl.getNextUpdate()), 0))
+            .then(Mono.fromRunnable(() -> log.info("Ссылок на CRL в очереди обновления: {}", size())));
+    }
+
+    /**
+     * Заполнение очереди при старте приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reloadOnStartup() {
+        reload().subscribe(null, throwable -> log.error("Ошибка заполнения очереди обновления CRL", throwable));
+    }
+
+    /**
+     * Проверка очереди: скачать списки, срок обновления которых наступил.
+     */
+    @Scheduled(fixedDelayString = "${crl.refresh.tick-ms}")
+    public void refreshDue() {
+        List<ScheduledUrl> due = pollDue(System.currentTimeMillis());
+        if (!due.isEmpty()) {
+            log.debug("Обновление CRL по {} ссылкам", due.size());
+            Flux.fromIterable(due)
+                .flatMap(scheduledUrl -> refresh(scheduledUrl).subscribeOn(refreshScheduler))
+                .subscribe();
+        }
+    }
+
+    /**
+     * Количество ссылок в очереди и в обработке.
+     *
+     * @return количество
+     */
+    public synchronized int size() {
+        return scheduled.size() + running.size();
+    }
+
+    private Mono<Void> refresh(ScheduledUrl scheduledUrl) {
+        String url = scheduledUrl.url;
+        return crlUrlStorage.getByUrl(url).next()
+            .flatMap(crlUrl -> crlUpdater.updateCrl(crlUrl)
+                .doOnNext(this::scheduleDeltaCrlUrls)
+                .map(crl -> completed(url, dueAt(crl.getThisUpdate(), crl.getNextUpdate()), 0))
+                // пустой результат - только ответ 304: список не изменился, следующий срок по сохраненному nextUpdate.
+                // ошибки загрузки и разбора приходят ошибкой и считаются ниже
+                .switchIfEmpty(Mono.fromCallable(() ->
+                    completed(url, dueAt(crlUrl.getCurrentUpdate(), crlUrl.getNextUpdate()), scheduledUrl.failures))))
+            .onErrorResume(throwable -> {
+                log.warn("Ошибка обновления CRL {}: {}", url, throwable.getMessage());
+                return Mono.fromCallable(() -> completed(url, 0, scheduledUrl.failures + 1));
+            })
+            // ссылки больше нет в хранилище - из очереди убираем
+            .switchIfEmpty(Mono.fromRunnable(() -> release(url)))
+            .then();
+    }
+
+    private void scheduleDeltaCrlUrls(Crl crl) {
+        if (crl.getDeltaCrlUrls() != null) {
+            crl.getDeltaCrlUrls().forEach(url -> schedule(url, System.currentTimeMillis(), 0));
+        }
+    }
+
+    /**
+     * Время следующего скачивания по данным скачанного списка. Прошедшее время - скачать сразу.
+     */
+    private long dueAt(Date currentUpdate, Date nextUpdate) {
+        long res;
+        if (currentUpdate == null) {
+            res = System.currentTimeMillis();
+        } else if (nextUpdate == null) {
+            res = currentUpdate.getTime() + TimeUnit.HOURS.toMillis(defaultIntervalHours);
+        } else {
+            // для коротко живущих списков (разностных) опережение и разброс - не больше четверти срока действия
+            long quarter = Math.max(0, nextUpdate.getTime() - currentUpdate.getTime()) / 4;
+            long spread = Math.min(TimeUnit.MINUTES.toMillis(spreadMinutes), quarter);
+            res = nextUpdate.getTime() - Math.min(TimeUnit.MINUTES.toMillis(leadMinutes), quarter) -
+                (spread > 0 ? ThreadLocalRandom.current().nextLong(spread) : 0);
+        }
+        return res;
+    }
+
+    private synchronized void schedule(String url, long dueAt, int failures) {
+        if (url != null && !scheduled.containsKey(url) && !running.contains(url)) {
+            ScheduledUrl scheduledUrl = new ScheduledUrl(url, dueAt, failures);
+            scheduled.put(url, scheduledUrl);
+            queue.add(scheduledUrl);
+        }
+    }
+
+    private synchronized List<ScheduledUrl> pollDue(long now) {
+        List<ScheduledUrl> res = new ArrayList<>();
+        while (!queue.isEmpty() && queue.peek().dueAt <= now && running.size() < concurrency) {
+            ScheduledUrl scheduledUrl = queue.poll();
+            scheduled.remove(scheduledUrl.url);
+            running.add(scheduledUrl.url);
+            res.add(scheduledUrl);
+        }
+        return res;
+    }
+
+    /**
+     * Завершить обработку ссылки и поставить ее в очередь снова. Если срок уже прошел (список не скачался
+     * или на сервере еще старая версия), повтор - через интервал повтора с удвоением по числу ошибок.
+     */
+    private synchronized ScheduledUrl completed(String url, long dueAt, int failures) {
+        running.remove(url);
+        long now = System.currentTimeMillis();
+        long retry = Math.min(TimeUnit.MINUTES.toMillis(retryMinutes) << Math.min(failures, MAX_BACKOFF_SHIFT),
+            TimeUnit.HOURS.toMillis(defaultIntervalHours));
+        ScheduledUrl res = new ScheduledUrl(url, dueAt > now ? dueAt : now + retry, failures);
+        scheduled.put(url, res);
+        queue.add(res);
+        return res;
+    }
+
+    private synchronized void release(String url) {
+        running.remove(url);
+    }
+
+    /**
+     * Ссылка в очереди.
+     *
+     * @author maksimgurin
+     */
+    private static final class ScheduledUrl implements Comparable<ScheduledUrl> {
+        private final String url;
+        private final long dueAt;
+        private final int failures;
+
+        ScheduledUrl(String url, long dueAt, int failures) {
+            this.url = url;
+            this.dueAt = dueAt;
+            this.failures = failures;
+        }
+
+        @Override
+        public int compareTo(ScheduledUrl other) {
+            return Long.compare(dueAt, other.dueAt);
+        }
+    }
+}
@@ -7,12 +7,17 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import ru.gostmaster.cache.ChainValidationCache;
+import ru.gostmaster.storage.impl.GraphCertificateStorage;
+import ru.gostmaster.tracing.Tracer;
 
 /**
  * Компонент, который занимается обновлением всех данных. Алгоритм следующий:
  * 1. Загружаются все сертификаты. Параллельно извлекаются ссылки на CRL и складываются в хранилище ссылок.
  * 2. Из дополнительных источников извлекаются ссылки на CRL и сохраняются в  хранилище ссылок.
- * 3. Идем по хранилищу ссылок. Если какая-то ссылка не  скачана, или же надо обновить - пытаемся скачать.
+ * 3. Ссылки из хранилища ставятся в очередь {@link CrlRefreshScheduler}: новые скачиваются сразу,
+ * остальные - незадолго до nextUpdate своего списка.
+ * После загрузки сертификатов перестраивается граф сертификатов в памяти.
  *
  * @author maksimgurin
  */
@@ -27,7 +32,17 @@ public class DataUpdater {
     private CRLUrlUpdater crlUrlUpdater;
 
     @Setter(onMethod_ = {@Autowired})
-    private CRLUpdater crlUpdater;
+    private CrlRefreshScheduler crlRefreshScheduler;
+
+    // граф есть только при хранении в MongoDB (storage.type=mongo)
+    @Setter(onMethod_ = {@Autowired(required = false)})
+    private GraphCertificateStorage graphCertificateStorage;
+
+    @Setter(onMethod_ = {@Autowired})
+    private ChainValidationCache chainValidationCache;
+
+    @Setter(onMethod_ = {@Autowired})
+    private Tracer tracer;
 
     /**
      * Центральный метод, который запускается при обновлении данных.
@@ -36,8 +51,11 @@ public class DataUpdater {
      */
     public Mono<Void> doUpdate() {
         //1. Загружаем сертификаты
-        Mono<Void> certificateUploadedMono = Mono.defer(() -> certificateUpdater.uploadNewTrustedCertificates())
-            .then(certificateUpdater.uploadNewIntermediateCertificates())
+        Mono<Void> certificateUploadedMono = tracer.trace("update.trusted-certificates",
+            Mono.defer(() -> certificateUpdater.uploadNewTrustedCertificates()))
+            .then(tracer.trace("update.intermediate-certificates", certificateUpdater.uploadNewIntermediateCertificates()))
+            .then(tracer.trace("update.certificate-graph", Mono.defer(this::reloadGraph)))
+            .doOnSuccess(v -> chainValidationCache.invalidateAll())
             .doFinally(signalType -> {
                 log.info("**************************");
                 log.info("* Сертификаты загружены! *");
@@ -45,22 +63,22 @@ public class DataUpdater {
             }).cache();
 
         //2. Загружаем дополнительные ссылки на CRL.
-        Mono<Void> crlUrlUploadedMono = crlUrlUpdater.uploadNewCrlUrls()
+        Mono<Void> crlUrlUploadedMono = tracer.trace("update.crl-urls", crlUrlUpdater.uploadNewCrlUrls())
             .doFinally(signalType -> {
                 log.info("********************************************************");
                 log.info("* Ссылки на списки отозванных сертификатов обнолвлены! *");
                 log.info("********************************************************");
             }).cache();
 
-        //3. Загружаем CRL. После того, как были загружены сертификаты и ссылки
+        //3. Ставим ссылки на CRL в очередь обновления. После того, как были загружены сертификаты и ссылки
         Mono<Void> updatedCrls = certificateUploadedMono
-            .then(crlUrlUploadedMono).then(crlUpdater.updateCrls())
+            .then(crlUrlUploadedMono).then(tracer.trace("update.crls", Mono.defer(crlRefreshScheduler::reload)))
             .doFinally(signalType -> {
-                log.info("********************************************************************");
-                log.info("* Данные сертификатов и списков отозванных сертификатов обновлены! *");
-                log.info("********************************************************************");
+                log.info("*********************************************************************************");
+                log.info("* Данные сертификатов обновлены, ссылки на CRL поставлены в очередь обновления! *");
+                log.info("*********************************************************************************");
             });
-        return updatedCrls;
+        return tracer.trace("data-update", updatedCrls);
     }
 
     /**
@@ -70,4 +88,8 @@ public class DataUpdater {
     public void doScheduledUpdate() {
         doUpdate().subscribeOn(Schedulers.newElastic("data-update-scheduler")).subscribe();
     }
+
+    private Mono<Void> reloadGraph() {
+        return graphCertificateStorage == null ? Mono.empty() : graphCertificateStorage.reload();
+    }
 }
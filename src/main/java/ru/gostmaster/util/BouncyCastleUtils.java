@@ -2,6 +2,7 @@ package ru.gostmaster.util;
 
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Integer;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.ASN1Primitive;
 import org.bouncycastle.asn1.DERIA5String;
@@ -27,7 +28,10 @@ import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
 import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.util.encoders.Hex;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemReader;
 import org.springframework.util.StringUtils;
 import ru.gostmaster.dictionary.AlgorithmsNames;
 import ru.gostmaster.dictionary.CertificatePoliciesName;
@@ -41,9 +45,12 @@ import ru.gostmaster.verification.data.SignatureCertificateInfo;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
+import java.security.cert.X509Extension;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -316,6 +323,87 @@ public final class BouncyCastleUtils {
         return crlUrls;
     }
 
+    /**
+     * Получить ссылки на разностные CRL из расширения FreshestCRL сертификата или CRL.
+     *
+     * @param source сертификат или CRL
+     * @return список ссылок, пустой, если расширения нет
+     */
+    public static List<String> getFreshestCrlUrls(X509Extension source) {
+        List<String> res = new ArrayList<>();
+        byte[] extensionValue = source.getExtensionValue(Extension.freshestCRL.getId());
+        if (extensionValue != null) {
+            try {
+                CRLDistPoint distPoint = CRLDistPoint.getInstance(JcaX509ExtensionUtils.parseExtensionValue(extensionValue));
+                for (DistributionPoint dp : distPoint.getDistributionPoints()) {
+                    DistributionPointName dpn = dp.getDistributionPoint();
+                    if (dpn != null && dpn.getType() == DistributionPointName.FULL_NAME) {
+                        Arrays.stream(GeneralNames.getInstance(dpn.getName()).getNames())
+                            .filter(name -> name.getTagNo() == GeneralName.uniformResourceIdentifier)
+                            .map(name -> DERIA5String.getInstance(name.getName()).getString())
+                            .forEach(res::add);
+                    }
+                }
+            } catch (Exception ex) {
+                log.warn("Не удалось разобрать расширение FreshestCRL: {}", ex.getMessage());
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Получить номер CRL (расширение CRLNumber).
+     *
+     * @param crl CRL
+     * @return номер или null, если расширения нет
+     * @throws IOException если расширение не удалось разобрать
+     */
+    public static BigInteger getCrlNumber(X509CRL crl) throws IOException {
+        return getIntegerExtension(crl, Extension.cRLNumber);
+    }
+
+    /**
+     * Получить номер базового CRL разностного списка (расширение DeltaCRLIndicator).
+     *
+     * @param crl CRL
+     * @return номер базового списка или null, если список полный
+     * @throws IOException если расширение не удалось разобрать
+     */
+    public static BigInteger getBaseCrlNumber(X509CRL crl) throws IOException {
+        return getIntegerExtension(crl, Extension.deltaCRLIndicator);
+    }
+
+    /**
+     * Извлечь DER из PEM (содержимое первого PEM-блока).
+     *
+     * @param pem данные в формате PEM
+     * @return DER
+     * @throws IOException если данные не в формате PEM
+     */
+    public static byte[] pemToDer(String pem) throws IOException {
+        try (PemReader pemReader = new PemReader(new StringReader(pem))) {
+            PemObject pemObject = pemReader.readPemObject();
+            if (pemObject == null) {
+                throw new IOException("Данные не в формате PEM");
+            }
+            return pemObject.getContent();
+        }
+    }
+
+    /**
+     * Отпечаток SHA-256 данных в hex.
+     *
+     * @param der данные (DER)
+     * @return отпечаток
+     */
+    public static String sha256Thumbprint(byte[] der) {
+        SHA256Digest digest = new SHA256Digest();
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.update(der, 0, der.length);
+        digest.doFinal(hash, 0);
+        return Hex.toHexString(hash);
+    }
+
     /**
      * Построить объект SignatureCertificateInfo из сертификатов и данных о подписанте.
      *
@@ -415,5 +503,10 @@ public final class BouncyCastleUtils {
 
         return res;
     }
-    
+
+    private static BigInteger getIntegerExtension(X509CRL crl, ASN1ObjectIdentifier oid) throws IOException {
+        byte[] extensionValue = crl.getExtensionValue(oid.getId());
+        return extensionValue == null ? null :
+            ASN1Integer.getInstance(JcaX509ExtensionUtils.parseExtensionValue(extensionValue)).getValue();
+    }
 }
@@ -0,0 +1,104 @@
+package ru.gostmaster.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Алгоритмы сжатия хранимых данных.
+ *
+ * @author maksimgurin
+ */
+public enum CompressionCodec {
+
+    /**
+     * gzip со степенью сжатия по умолчанию: меньше размер, медленнее сжатие.
+     */
+    GZIP {
+        @Override
+        OutputStream encoder(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+
+        @Override
+        InputStream decoder(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+    },
+
+    /**
+     * deflate (zlib) с самой быстрой степенью сжатия.
+     */
+    DEFLATE {
+        @Override
+        OutputStream encoder(OutputStream out) {
+            return new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        // собственный Deflater потоком не освобождается
+                        def.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        InputStream decoder(InputStream in) {
+            return new InflaterInputStream(in);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Сжать данные.
+     *
+     * @param data данные
+     * @return сжатые данные
+     */
+    public byte[] compress(byte[] data) {
+        ByteArrayOutputStream res = new ByteArrayOutputStream(Math.max(BUFFER_SIZE, data.length / 4));
+        try (OutputStream out = encoder(res)) {
+            out.write(data);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return res.toByteArray();
+    }
+
+    /**
+     * Распаковать данные.
+     *
+     * @param data сжатые данные
+     * @return данные
+     */
+    public byte[] decompress(byte[] data) {
+        ByteArrayOutputStream res = new ByteArrayOutputStream(Math.max(BUFFER_SIZE, data.length * 4));
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = decoder(new ByteArrayInputStream(data))) {
+            int read = in.read(buffer);
+            while (read != -1) {
+                res.write(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return res.toByteArray();
+    }
+
+    abstract OutputStream encoder(OutputStream out) throws IOException;
+
+    abstract InputStream decoder(InputStream in) throws IOException;
+}
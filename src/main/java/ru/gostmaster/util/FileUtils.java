@@ -1,18 +1,33 @@
 package ru.gostmaster.util;
 
 import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.DigestCalculator;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import ru.gostmaster.verification.exception.SignatureUploadException;
 
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.BaseStream;
 
 /**
@@ -23,6 +38,9 @@ import java.util.stream.BaseStream;
 @Slf4j
 public final class FileUtils {
 
+    private static final int DIGEST_CHUNK_SIZE = 8192;
+    private static final int PIPE_SIZE = 65536;
+
     private FileUtils() {
     }
 
@@ -92,4 +110,132 @@ public final class FileUtils {
         });
         return res;
     }
+
+    /**
+     * Считаем хэши тела файла по мере поступления данных, не собирая тело в памяти.
+     *
+     * @param dataBufferFlux   поток байтовых данных
+     * @param digestAlgorithms алгоритмы хэширования
+     * @return хэши по OID алгоритма хэширования
+     */
+    public static Mono<Map<ASN1ObjectIdentifier, byte[]>> readToDigests(Flux<DataBuffer> dataBufferFlux,
+                                                                       Collection<AlgorithmIdentifier> digestAlgorithms) {
+        return Mono.fromCallable(() -> new StreamingDigests(digestAlgorithms))
+            .flatMap(digests -> dataBufferFlux
+                .doOnNext(dataBuffer -> {
+                    try {
+                        digests.update(dataBuffer);
+                    } finally {
+                        DataBufferUtils.release(dataBuffer);
+                    }
+                })
+                .then(Mono.fromCallable(digests::getDigests)))
+            .onErrorMap(throwable -> !(throwable instanceof SignatureUploadException),
+                throwable -> new SignatureUploadException(throwable));
+    }
+
+    /**
+     * Читаем тело файла блокирующим парсером по мере поступления данных. Данные передаются через канал
+     * ограниченного размера, поэтому в памяти одновременно находится не больше {@value #PIPE_SIZE} байт тела.
+     * Запись в канал и чтение из него выполняются на разных потоках {@link Schedulers#boundedElastic()}.
+     *
+     * @param dataBufferFlux поток байтовых данных
+     * @param reader         парсер
+     * @param <T>            результат разбора
+     * @return результат разбора
+     */
+    public static <T> Mono<T> readAsStream(Flux<DataBuffer> dataBufferFlux, StreamReader<T> reader) {
+        return Mono.using(() -> new PipedInputStream(PIPE_SIZE),
+            input -> Mono.fromCallable(() -> {
+                AtomicReference<Throwable> uploadError = new AtomicReference<>();
+                PipedOutputStream output = new PipedOutputStream(input);
+                DataBufferUtils.write(dataBufferFlux, output)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .doOnNext(DataBufferUtils::release)
+                    .doFinally(signalType -> closeQuietly(output))
+                    .subscribe(null, uploadError::set);
+                T res = null;
+                Exception readError = null;
+                try {
+                    res = reader.read(input);
+                } catch (Exception ex) {
+                    readError = ex;
+                }
+                // обрыв загрузки выглядит для парсера как конец данных, поэтому сначала проверяем загрузку
+                if (uploadError.get() != null) {
+                    throw new SignatureUploadException(uploadError.get());
+                } else if (readError != null) {
+                    throw readError;
+                }
+                return res;
+            }).subscribeOn(Schedulers.boundedElastic()),
+            FileUtils::closeQuietly);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.trace("", e);
+        }
+    }
+
+    /**
+     * Блокирующий разбор потока.
+     *
+     * @param <T> результат разбора
+     */
+    @FunctionalInterface
+    public interface StreamReader<T> {
+
+        /**
+         * Разобрать поток.
+         *
+         * @param inputStream поток
+         * @return результат разбора
+         * @throws Exception ошибка разбора
+         */
+        T read(InputStream inputStream) throws Exception;
+    }
+
+    /**
+     * Хэши, которые считаются по частям. Буфер для копирования данных один на весь поток.
+     *
+     * @author maksimgurin
+     */
+    private static final class StreamingDigests {
+        private final Map<ASN1ObjectIdentifier, DigestCalculator> calculators = new HashMap<>();
+        private final byte[] chunk = new byte[DIGEST_CHUNK_SIZE];
+
+        StreamingDigests(Collection<AlgorithmIdentifier> digestAlgorithms) throws Exception {
+            DigestCalculatorProvider provider = new JcaDigestCalculatorProviderBuilder()
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .build();
+            for (AlgorithmIdentifier digestAlgorithm : digestAlgorithms) {
+                if (!calculators.containsKey(digestAlgorithm.getAlgorithm())) {
+                    calculators.put(digestAlgorithm.getAlgorithm(), provider.get(digestAlgorithm));
+                }
+            }
+        }
+
+        void update(DataBuffer dataBuffer) {
+            try {
+                while (dataBuffer.readableByteCount() > 0) {
+                    int length = Math.min(chunk.length, dataBuffer.readableByteCount());
+                    dataBuffer.read(chunk, 0, length);
+                    for (DigestCalculator calculator : calculators.values()) {
+                        calculator.getOutputStream().write(chunk, 0, length);
+                    }
+                }
+            } catch (IOException e) {
+                throw new SignatureUploadException(e);
+            }
+        }
+
+        Map<ASN1ObjectIdentifier, byte[]> getDigests() {
+            Map<ASN1ObjectIdentifier, byte[]> res = new HashMap<>();
+            calculators.forEach((oid, calculator) -> res.put(oid, calculator.getDigest()));
+            return res;
+        }
+    }
 }
@@ -1,7 +1,5 @@
 package ru.gostmaster.verification;
 
-import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cms.SignerInformation;
 import reactor.core.publisher.Mono;
 import ru.gostmaster.verification.data.CheckResult;
 
@@ -14,11 +12,10 @@ public interface Check {
     
     /**
      * Провести какую то конкретную проверку подписи.
-     * @param signerInformation подписант
-     * @param certificateHolder сертификат
+     * @param context контекст проверки подписанта: подписант, его сертификат и вычисленные по ним данные
      * @return результат проверки
      */
-    Mono<CheckResult> verify(SignerInformation signerInformation, X509CertificateHolder certificateHolder);
+    Mono<CheckResult> verify(VerificationContext context);
 
     /**
      * Активна ли проверка или нет.
@@ -0,0 +1,164 @@
+package ru.gostmaster.verification;
+
+import lombok.Getter;
+import org.bouncycastle.asn1.x509.CertificatePolicies;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.asn1.x509.PolicyInformation;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import ru.gostmaster.util.BouncyCastleUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Контекст проверки одного подписанта в рамках одного запроса. Производные от сертификата данные
+ * вычисляются при первом обращении и запоминаются, поэтому каждая проверка получает их без повторного разбора.
+ * <p>
+ * Проверки могут хранить в контексте собственные данные через {@link #computeIfAbsent(String, Function)}.
+ *
+ * @author maksimgurin
+ */
+public class VerificationContext {
+
+    private static final String AUTHORITY_KEY_IDENTIFIER = "authorityKeyIdentifier";
+    private static final String CERTIFICATE_HASH = "certificateHash";
+    private static final String SIGNED_DATE = "signedDate";
+    private static final String CERTIFICATE = "certificate";
+    private static final String KEY_USAGE = "keyUsage";
+    private static final String CERTIFICATE_POLICY_OIDS = "certificatePolicyOids";
+
+    @Getter
+    private final SignerInformation signerInformation;
+
+    @Getter
+    private final X509CertificateHolder certificateHolder;
+
+    private final Map<String, Optional<?>> values = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор.
+     *
+     * @param signerInformation подписант
+     * @param certificateHolder сертификат подписанта
+     */
+    public VerificationContext(SignerInformation signerInformation, X509CertificateHolder certificateHolder) {
+        this.signerInformation = signerInformation;
+        this.certificateHolder = certificateHolder;
+    }
+
+    /**
+     * Получить значение из контекста или вычислить и запомнить его. При одновременном вычислении
+     * запоминается первое сохраненное значение, поэтому функция не должна иметь побочных эффектов.
+     *
+     * @param key      ключ значения
+     * @param function функция вычисления значения
+     * @param <T>      тип значения
+     * @return значение (может быть null)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T computeIfAbsent(String key, Function<VerificationContext, T> function) {
+        // не используем ConcurrentHashMap.computeIfAbsent: функция может сама обращаться к контексту
+        Optional<T> value = (Optional<T>) values.get(key);
+        if (value == null) {
+            Optional<T> computed = Optional.ofNullable(function.apply(this));
+            Optional<T> existing = (Optional<T>) values.putIfAbsent(key, computed);
+            value = existing == null ? computed : existing;
+        }
+        return value.orElse(null);
+    }
+
+    /**
+     * Идентификатор ключа издателя сертификата подписанта.
+     *
+     * @return идентификатор или null
+     */
+    public String getAuthorityKeyIdentifier() {
+        return computeIfAbsent(AUTHORITY_KEY_IDENTIFIER,
+            context -> BouncyCastleUtils.getAuthorityKeyIdentifier(context.getCertificateHolder()));
+    }
+
+    /**
+     * SHA-256 сертификата подписанта в DER, вычисляется так же, как отпечаток сертификата в хранилище.
+     *
+     * @return хэш в hex
+     */
+    public String getCertificateHash() {
+        return computeIfAbsent(CERTIFICATE_HASH, context -> {
+            try {
+                return BouncyCastleUtils.sha256Thumbprint(context.getCertificateHolder().getEncoded());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    /**
+     * Дата подписания из подписанных атрибутов.
+     *
+     * @return дата или null
+     */
+    public Date getSignedDate() {
+        return computeIfAbsent(SIGNED_DATE, context -> context.getSignerInformation().getSignedAttributes() == null ?
+            null : BouncyCastleUtils.getSignedDate(context.getSignerInformation()));
+    }
+
+    /**
+     * Сертификат подписанта в представлении JCA.
+     *
+     * @return сертификат
+     * @throws IllegalStateException если сертификат не удалось преобразовать
+     */
+    public X509Certificate getCertificate() {
+        return computeIfAbsent(CERTIFICATE, context -> {
+            try {
+                return new JcaX509CertificateConverter().setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                    .getCertificate(context.getCertificateHolder());
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+    }
+
+    /**
+     * Расширение KeyUsage сертификата подписанта.
+     *
+     * @return KeyUsage или null, если расширения нет
+     */
+    public KeyUsage getKeyUsage() {
+        return computeIfAbsent(KEY_USAGE, context -> KeyUsage.fromExtensions(context.getCertificateHolder().getExtensions()));
+    }
+
+    /**
+     * OID политик из расширения certificatePolicies сертификата подписанта.
+     *
+     * @return множество OID (пустое, если расширения нет)
+     */
+    public Set<String> getCertificatePolicyOids() {
+        return computeIfAbsent(CERTIFICATE_POLICY_OIDS, context -> {
+            CertificatePolicies policies = CertificatePolicies.fromExtensions(context.getCertificateHolder().getExtensions());
+            Set<String> res = Collections.emptySet();
+            if (policies != null) {
+                res = Collections.unmodifiableSet(Stream.of(policies.getPolicyInformation())
+                    .map(PolicyInformation::getPolicyIdentifier)
+                    .filter(Objects::nonNull)
+                    .map(String::valueOf)
+                    .collect(Collectors.toSet()));
+            }
+            return res;
+        });
+    }
+}
@@ -1,6 +1,9 @@
 package ru.gostmaster.verification;
 
+import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformationStore;
+import org.bouncycastle.util.Store;
 import reactor.core.publisher.Mono;
 import ru.gostmaster.verification.data.VerificationResult;
 
@@ -17,4 +20,13 @@ public interface VerificationService {
      * @return результат
      */
     Mono<VerificationResult> verify(CMSSignedData cmsSignedData);
+
+    /**
+     * Верифицируем подписантов, полученных без построения CMSSignedData (например, потоковым парсером).
+     * У подписантов уже должен быть посчитан хэш подписанного содержимого.
+     * @param signerInformationStore подписанты
+     * @param certificates сертификаты из подписи
+     * @return результат
+     */
+    Mono<VerificationResult> verify(SignerInformationStore signerInformationStore, Store<X509CertificateHolder> certificates);
 }
@@ -0,0 +1,22 @@
+package ru.gostmaster.verification.data;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * DTO одной пары файл/подпись в пакетной проверке (одна строка NDJSON). Содержимое передается в base64.
+ * 
+ * @author maksimgurin 
+ */
+@Data
+public class BatchVerificationItem {
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("data")
+    private byte[] data;
+
+    @JsonProperty("sig")
+    private byte[] signature;
+}
@@ -0,0 +1,22 @@
+package ru.gostmaster.verification.data;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * DTO результата проверки одной пары файл/подпись в пакетной проверке.
+ * Ошибки загрузки и разбора подписи передаются в полях uploading_error самого результата.
+ * 
+ * @author maksimgurin 
+ */
+@Data
+@AllArgsConstructor
+public class BatchVerificationItemResult {
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("result")
+    private VerificationResult result;
+}
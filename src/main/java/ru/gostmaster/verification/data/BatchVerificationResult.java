@@ -0,0 +1,25 @@
+package ru.gostmaster.verification.data;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * DTO результата пакетной проверки. Результаты идут в порядке пар в запросе.
+ * 
+ * @author maksimgurin 
+ */
+@Data
+public class BatchVerificationResult {
+
+    @JsonProperty("verificated_at")
+    private Date verificationTime;
+
+    @JsonProperty("items_count")
+    private Integer itemsCount;
+
+    @JsonProperty("items")
+    private List<BatchVerificationItemResult> items;
+}
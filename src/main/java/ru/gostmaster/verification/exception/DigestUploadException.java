@@ -0,0 +1,27 @@
+package ru.gostmaster.verification.exception;
+
+/**
+ * Исключение, если хэш подписанного файла не указан или указан неверно.
+ * 
+ * @author maksimgurin 
+ */
+public class DigestUploadException extends RuntimeException {
+    public DigestUploadException() {
+    }
+
+    public DigestUploadException(String message) {
+        super(message);
+    }
+
+    public DigestUploadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public DigestUploadException(Throwable cause) {
+        super(cause);
+    }
+
+    public DigestUploadException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
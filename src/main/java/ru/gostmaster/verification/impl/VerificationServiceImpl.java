@@ -1,17 +1,26 @@
 package ru.gostmaster.verification.impl;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.SignerInformationStore;
+import org.bouncycastle.util.Store;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.gostmaster.metrics.UploadSize;
+import ru.gostmaster.metrics.VerificationMetrics;
+import ru.gostmaster.tracing.Tracer;
 import ru.gostmaster.util.BouncyCastleUtils;
+import ru.gostmaster.verification.Check;
 import ru.gostmaster.verification.VerificationChecksService;
+import ru.gostmaster.verification.VerificationContext;
 import ru.gostmaster.verification.VerificationService;
 import ru.gostmaster.verification.data.CheckResult;
 import ru.gostmaster.verification.data.SignatureCertificateInfo;
@@ -25,6 +34,8 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Реализация сервиса проверки на основании  BouncyCastle.
@@ -36,12 +47,35 @@ import java.util.Optional;
 public class VerificationServiceImpl implements VerificationService {
 
     private VerificationChecksService verificationChecksService;
+    private Scheduler verificationScheduler;
+    private VerificationMetrics verificationMetrics;
+    private Tracer tracer;
 
     @Override
     public Mono<VerificationResult> verify(CMSSignedData cmsSignedData) {
-        List<Pair<SignerInformation, X509CertificateHolder>> infoWithCerts = getSignerAndCerts(cmsSignedData);
+        return verify(cmsSignedData.getSignerInfos(), cmsSignedData.getCertificates());
+    }
+
+    @Override
+    public Mono<VerificationResult> verify(SignerInformationStore signerInformationStore,
+                                           Store<X509CertificateHolder> certificates) {
+        List<Pair<SignerInformation, X509CertificateHolder>> infoWithCerts = getSignerAndCerts(signerInformationStore,
+            certificates);
+        Set<String> algorithms = infoWithCerts.stream()
+            .map(pair -> VerificationMetrics.algorithmOf(pair.getFirst().getEncryptionAlgOID()))
+            .collect(Collectors.toSet());
+
+        // размер файла для метрик передается контроллером в контексте Reactor
+        return Mono.subscriberContext()
+            .map(UploadSize::bucketOf)
+            .flatMap(sizeBucket -> verifySigners(infoWithCerts, sizeBucket)
+                .doOnNext(result -> verificationMetrics.countResult(result, algorithms, sizeBucket)));
+    }
+
+    private Mono<VerificationResult> verifySigners(List<Pair<SignerInformation, X509CertificateHolder>> infoWithCerts,
+                                                   String sizeBucket) {
         Mono<List<SignatureCheckResult>> signatureCheckResultFlux = Flux.fromIterable(infoWithCerts)
-            .flatMap(pair -> verifySignature(pair.getFirst(), pair.getSecond()))
+            .flatMap(pair -> verifySignature(pair.getFirst(), pair.getSecond(), sizeBucket))
             .collectList();
 
         Mono<VerificationResult> res = signatureCheckResultFlux.map(signatureCheckResults -> {
@@ -62,11 +96,12 @@ public class VerificationServiceImpl implements VerificationService {
         return res;
     }
 
-    private List<Pair<SignerInformation, X509CertificateHolder>> getSignerAndCerts(CMSSignedData signedData) {
+    private List<Pair<SignerInformation, X509CertificateHolder>> getSignerAndCerts(SignerInformationStore signerInformationStore,
+                                                                                   Store<X509CertificateHolder> certificates) {
         List<Pair<SignerInformation, X509CertificateHolder>> res = new ArrayList<>();
-        Collection<SignerInformation> signers = signedData.getSignerInfos().getSigners();
+        Collection<SignerInformation> signers = signerInformationStore.getSigners();
         for (SignerInformation signerInformation : signers) {
-            Collection<X509CertificateHolder> x509Certificates = signedData.getCertificates()
+            Collection<X509CertificateHolder> x509Certificates = certificates
                 .getMatches(signerInformation.getSID());
             if (CollectionUtils.isEmpty(x509Certificates)) {
                 throw new SignatureVerificationException("Для подписанта " +
@@ -84,28 +119,52 @@ public class VerificationServiceImpl implements VerificationService {
     }
     
     private Mono<SignatureCheckResult> verifySignature(SignerInformation signerInformation, 
-                                                       X509CertificateHolder holder) {
+                                                       X509CertificateHolder holder,
+                                                       String sizeBucket) {
+        // контекст общий для всех проверок подписанта: производные данные вычисляются один раз
+        VerificationContext context = new VerificationContext(signerInformation, holder);
+        String algorithm = VerificationMetrics.algorithmOf(signerInformation.getEncryptionAlgOID());
 
+        // проверки не зависят друг от друга: каждая запускается отдельной задачей в пуле проверки
         Mono<List<CheckResult>> checks = Flux.fromIterable(verificationChecksService.getChecks())
-            .flatMap(stepVerification -> {
-                if (stepVerification.isEnabled()) {
-                    return stepVerification.verify(signerInformation, holder);
-                } else {
-                    return Mono.empty();
-                }
-            })
+            .filter(Check::isEnabled)
+            .flatMap(stepVerification -> tracer.trace("check",
+                Collections.singletonMap("check", stepVerification.getClass().getSimpleName()),
+                verificationMetrics.timeCheck(stepVerification, algorithm, sizeBucket,
+                    Mono.defer(() -> stepVerification.verify(context)))
+                    .subscribeOn(verificationScheduler)))
             .collectList();
         
         Mono<SignatureCertificateInfo> certificateInfoMono = Mono.fromCallable(() -> 
             BouncyCastleUtils.buildSignatureCertificateInfo(signerInformation, holder)
-        );
+        ).subscribeOn(verificationScheduler);
         
-        return Mono.zip(checks, certificateInfoMono)
-            .map(pair -> new SignatureCheckResult(pair.getT1(), pair.getT2()));
+        return Mono.defer(() -> {
+            Timer.Sample sample = verificationMetrics.startSigner();
+            return Mono.zip(checks, certificateInfoMono)
+                .doOnNext(pair -> verificationMetrics.stopSigner(sample, algorithm, sizeBucket,
+                    pair.getT1().stream().allMatch(CheckResult::getSuccess)))
+                .map(pair -> new SignatureCheckResult(pair.getT1(), pair.getT2()));
+        });
     }
     
     @Autowired
     public void setVerificationChecksService(VerificationChecksService verificationChecksService) {
         this.verificationChecksService = verificationChecksService;
     }
+
+    @Autowired
+    public void setVerificationScheduler(Scheduler verificationScheduler) {
+        this.verificationScheduler = verificationScheduler;
+    }
+
+    @Autowired
+    public void setVerificationMetrics(VerificationMetrics verificationMetrics) {
+        this.verificationMetrics = verificationMetrics;
+    }
+
+    @Autowired
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
 }
@@ -0,0 +1,51 @@
+package ru.gostmaster.verification.impl.chain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.gostmaster.data.cert.Certificate;
+
+import java.security.cert.CertStore;
+import java.security.cert.PKIXCertPathBuilderResult;
+import java.security.cert.TrustAnchor;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Результат построения цепочки сертификатов для сертификата подписанта (без учета отзыва).
+ *
+ * @author maksimgurin
+ */
+@Getter
+@AllArgsConstructor
+public class CertificateChain {
+
+    /**
+     * Сертификаты из хранилища, из которых строилась цепочка.
+     */
+    private final List<Certificate> certificates;
+    private final Set<TrustAnchor> trustAnchors;
+
+    /**
+     * Промежуточные сертификаты и сертификат подписанта.
+     */
+    private final CertStore certStore;
+
+    /**
+     * Построенная цепочка или null, если цепочку построить не удалось.
+     */
+    private final PKIXCertPathBuilderResult path;
+
+    /**
+     * Ошибка построения цепочки или null.
+     */
+    private final Exception error;
+
+    /**
+     * Удалось ли построить цепочку.
+     *
+     * @return флаг
+     */
+    public boolean isBuilt() {
+        return path != null;
+    }
+}
@@ -0,0 +1,152 @@
+package ru.gostmaster.verification.impl.chain;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.gostmaster.cache.CertificateCache;
+import ru.gostmaster.cache.ChainValidationCache;
+import ru.gostmaster.cache.ValidatedChain;
+import ru.gostmaster.data.cert.Certificate;
+import ru.gostmaster.storage.CertificateStorage;
+import ru.gostmaster.verification.VerificationContext;
+
+import java.security.cert.CertPathBuilder;
+import java.security.cert.CertStore;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXBuilderParameters;
+import java.security.cert.PKIXCertPathBuilderResult;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CertSelector;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Построение цепочки сертификатов для сертификата подписанта без учета отзыва.
+ * Цепочка строится один раз на контекст проверки подписанта и используется всеми проверками цепочки.
+ * Если цепочка для этого сертификата уже была успешно проверена и результат действителен, она не строится заново.
+ * Одновременные запросы с одним и тем же сертификатом подписанта (например, пакетная проверка) ждут одно построение.
+ *
+ * @author maksimgurin
+ */
+@Slf4j
+@Component
+public class CertificateChainBuilder {
+
+    private static final String CERTIFICATE_CHAIN = "certificateChain";
+
+    /**
+     * Построения цепочек, которые выполняются сейчас, по SHA-256 сертификата подписанта.
+     */
+    private final Map<String, Mono<CertificateChain>> inFlight = new ConcurrentHashMap<>();
+
+    @Setter(onMethod_ = {@Autowired})
+    private CertificateStorage certificateStorage;
+    @Setter(onMethod_ = {@Autowired})
+    private CertificateCache certificateCache;
+    @Setter(onMethod_ = {@Autowired})
+    private ChainValidationCache chainValidationCache;
+    @Setter(onMethod_ = {@Autowired})
+    private Scheduler verificationScheduler;
+
+    /**
+     * Получить цепочку для сертификата подписанта. Цепочка запоминается в контексте, повторные вызовы
+     * возвращают уже построенную цепочку.
+     *
+     * @param context контекст проверки подписанта
+     * @return цепочка
+     */
+    public Mono<CertificateChain> build(VerificationContext context) {
+        return context.computeIfAbsent(CERTIFICATE_CHAIN, this::buildChain);
+    }
+
+    private Mono<CertificateChain> buildChain(VerificationContext context) {
+        return Mono.defer(() -> chainValidationCache.get(context)
+            .map(ValidatedChain::getChain)
+            .map(Mono::just)
+            .orElseGet(() -> inFlight.computeIfAbsent(context.getCertificateHash(), hash -> lookupAndBuild(context, hash))))
+            .cache();
+    }
+
+    private CertificateChain buildChain(List<Certificate> certificates, VerificationContext context) {
+        Set<TrustAnchor> trustAnchors = buildTrustAnchors(certificates);
+        CertStore certStore = buildCertStoreForIntermediateAndSignatureCertificate(certificates, context);
+        PKIXCertPathBuilderResult path = null;
+        Exception error = null;
+        try {
+            CertPathBuilder pathBuilder = CertPathBuilder.getInstance("PKIX", BouncyCastleProvider.PROVIDER_NAME);
+            X509CertSelector targetConstraint = new X509CertSelector();
+
+            targetConstraint.setSubject(context.getCertificateHolder().getSubject().getEncoded());
+
+            PKIXBuilderParameters parameters = new PKIXBuilderParameters(trustAnchors, targetConstraint);
+            parameters.addCertStore(certStore);
+            parameters.setRevocationEnabled(false);
+
+            path = (PKIXCertPathBuilderResult) pathBuilder.build(parameters);
+        } catch (Exception ex) {
+            log.warn("", ex);
+            error = ex;
+        }
+        return new CertificateChain(certificates, trustAnchors, certStore, path, error);
+    }
+
+    private Mono<CertificateChain> lookupAndBuild(VerificationContext context, String hash) {
+        // убираем из inFlight только свой запрос: после завершения под тем же ключом мог появиться новый
+        AtomicReference<Mono<CertificateChain>> self = new AtomicReference<>();
+        // цепочка строится в пуле проверки, а не в потоке драйвера хранилища
+        Mono<CertificateChain> res = certificateStorage.getCertificateChainForLeafKey(context.getAuthorityKeyIdentifier())
+            .publishOn(verificationScheduler)
+            .map(certs -> buildChain(certs, context))
+            .doFinally(signalType -> inFlight.remove(hash, self.get()))
+            .cache();
+        self.set(res);
+        return res;
+    }
+
+    private Set<TrustAnchor> buildTrustAnchors(List<Certificate> certificates) {
+        Set<TrustAnchor> anchors = new HashSet<>();
+        for (Certificate certificate : certificates) {
+            if (certificate.isTrusted()) {
+                try {
+                    anchors.add(certificateCache.get(certificate).getTrustAnchor());
+                } catch (Exception ex) {
+                    log.warn("", ex);
+                }
+            }
+        }
+        return anchors;
+    }
+
+    private CertStore buildCertStoreForIntermediateAndSignatureCertificate(List<Certificate> certificates,
+                                                                           VerificationContext context) {
+        // кладем в хранилище уже разобранные объекты, чтобы не конвертировать их заново на каждый запрос
+        List<Object> content = new ArrayList<>();
+        CertStore certStore = null;
+        for (Certificate certificate : certificates) {
+            if (!certificate.isTrusted()) {
+                try {
+                    content.add(certificateCache.get(certificate).getCertificate());
+                } catch (Exception ex) {
+                    log.warn("", ex);
+                }
+            }
+        }
+        try {
+            content.add(context.getCertificate());
+            certStore = CertStore.getInstance("Collection", new CollectionCertStoreParameters(content),
+                BouncyCastleProvider.PROVIDER_NAME);
+        } catch (Exception e) {
+            log.warn("", e);
+        }
+        return certStore;
+    }
+}
@@ -2,52 +2,58 @@ package ru.gostmaster.verification.impl.checks;
 
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.bouncycastle.cert.X509CRLHolder;
-import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.jcajce.JcaCertStoreBuilder;
-import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.jcajce.PKIXExtendedParameters;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.gostmaster.cache.ChainValidationCache;
+import ru.gostmaster.cache.CrlCache;
 import ru.gostmaster.data.cert.Certificate;
 import ru.gostmaster.data.crl.Crl;
 import ru.gostmaster.messages.Messages;
+import ru.gostmaster.revocation.RevocationIndex;
+import ru.gostmaster.revocation.RevocationIndexRegistry;
 import ru.gostmaster.storage.CRLStorage;
-import ru.gostmaster.storage.CertificateStorage;
 import ru.gostmaster.util.BouncyCastleUtils;
-import ru.gostmaster.util.GetterUtils;
 import ru.gostmaster.verification.Check;
+import ru.gostmaster.verification.VerificationContext;
 import ru.gostmaster.verification.data.CheckResult;
 import ru.gostmaster.verification.data.CheckResults;
+import ru.gostmaster.verification.impl.chain.CertificateChain;
+import ru.gostmaster.verification.impl.chain.CertificateChainBuilder;
 
-import java.io.ByteArrayInputStream;
-import java.security.NoSuchProviderException;
-import java.security.cert.CertPathBuilder;
+import java.security.cert.CertPathValidator;
+import java.security.cert.CertPathValidatorException;
 import java.security.cert.CertStore;
-import java.security.cert.CertificateException;
 import java.security.cert.CertificateExpiredException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.CertificateRevokedException;
-import java.security.cert.PKIXBuilderParameters;
-import java.security.cert.PKIXCertPathBuilderResult;
-import java.security.cert.TrustAnchor;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXParameters;
 import java.security.cert.X509CRL;
-import java.security.cert.X509CertSelector;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
  * Проверка цепочки сертификатов с учетом CRL.
+ * <p>
+ * Цепочка строится один раз для всех проверок ({@link CertificateChainBuilder}), здесь проверяется только отзыв
+ * сертификатов построенной цепочки. Если для всех издателей цепочки есть действующий индекс отозванных
+ * сертификатов, статус берется из индекса. Иначе цепочка проверяется по CRL целиком, с учетом разностных CRL.
+ * Успешный результат запоминается в {@link ChainValidationCache} вместе с версиями использованных CRL.
  *
  * @author maksimgurin
  */
@@ -61,101 +67,185 @@ public class CertificateChainCrlCheck implements Check {
         "Возможно, возникла проблема с одним из промежуточных сертификатов или не найден список отозванных " +
         "сертификатов для одного из промежуточных";
 
+    /**
+     * Выполняющиеся сейчас загрузки CRL по набору издателей: одновременные проверки одной цепочки ждут одну загрузку.
+     */
+    private final Map<Set<String>, Mono<List<Crl>>> crlLookupsInFlight = new ConcurrentHashMap<>();
+
     @Setter(onMethod_ = {@Autowired})
     private CRLStorage crlStorage;
 
     @Setter(onMethod_ = {@Autowired})
-    private CertificateStorage certificateStorage;
+    private CrlCache crlCache;
 
-    private CertificateFactory certificateFactory;
+    @Setter(onMethod_ = {@Autowired})
+    private RevocationIndexRegistry revocationIndexRegistry;
 
-    public CertificateChainCrlCheck() throws CertificateException, NoSuchProviderException {
-        certificateFactory = CertificateFactory.getInstance("X509", BouncyCastleProvider.PROVIDER_NAME);
-    }
+    @Setter(onMethod_ = {@Autowired})
+    private CertificateChainBuilder certificateChainBuilder;
+
+    @Setter(onMethod_ = {@Autowired})
+    private ChainValidationCache chainValidationCache;
+
+    @Setter(onMethod_ = {@Autowired})
+    private Scheduler verificationScheduler;
 
     @Override
-    public Mono<CheckResult> verify(SignerInformation signerInformation, X509CertificateHolder certificateHolder) {
-        String authorityKeyIdentified = BouncyCastleUtils.getAuthorityKeyIdentifier(certificateHolder);
-        Mono<List<Certificate>> certificates = certificateStorage.getCertificateChainForLeafKey(authorityKeyIdentified);
+    public Mono<CheckResult> verify(VerificationContext context) {
+        Mono<CheckResult> res;
+        if (chainValidationCache.get(context).isPresent()) {
+            res = Mono.just(buildCheckResult(true, CERTIFICATE_CHAIN_VALID));
+        } else {
+            res = certificateChainBuilder.build(context)
+                .flatMap(chain -> checkWithRevocationIndex(chain, context)
+                    .map(Mono::just)
+                    .orElseGet(() -> checkWithCrls(chain, context)));
+        }
+        return res;
+    }
 
-        Mono<Set<TrustAnchor>> trustAnchorsMono = certificates.map(certs -> buildTrustAnchors(certs));
+    /**
+     * Проверка по индексам отозванных сертификатов.
+     *
+     * @return результат или пустой Optional, если индекс есть не для всех издателей цепочки
+     */
+    private Optional<CheckResult> checkWithRevocationIndex(CertificateChain chain, VerificationContext context) {
+        CheckResult checkResult = null;
+        if (!chain.isBuilt()) {
+            // цепочка не строится и без учета отзыва - с CRL результат будет тем же
+            checkResult = buildCheckResult(false, getReadableErrorMessage(chain.getError()));
+        } else {
+            long now = System.currentTimeMillis();
+            boolean complete = true;
+            boolean revoked = false;
+            Map<String, Long> crlVersions = new HashMap<>();
+            long crlNextUpdate = Long.MAX_VALUE;
+            for (java.security.cert.Certificate pathCertificate : chain.getPath().getCertPath().getCertificates()) {
+                X509Certificate certificate = (X509Certificate) pathCertificate;
+                RevocationIndex index = revocationIndexRegistry.getFreshIndex(getAuthorityKeyIdentifier(certificate), now);
+                if (index == null) {
+                    complete = false;
+                } else if (complete) {
+                    long revocationDate = index.getRevocationDate(certificate.getSerialNumber());
+                    revoked |= revocationDate != RevocationIndex.NOT_REVOKED && revocationDate <= now;
+                    crlVersions.put(getAuthorityKeyIdentifier(certificate), index.getThisUpdate());
+                    if (index.getNextUpdate() != RevocationIndex.NO_DATE) {
+                        crlNextUpdate = Math.min(crlNextUpdate, index.getNextUpdate());
+                    }
+                }
+            }
+            if (complete && !revoked) {
+                remember(context, chain, crlVersions, crlNextUpdate);
+            }
+            if (complete) {
+                checkResult = buildCheckResult(!revoked, revoked ? Messages.getMessage(Messages.CERTIFICATE_REVOKED) :
+                    CERTIFICATE_CHAIN_VALID);
+            }
+        }
+        return Optional.ofNullable(checkResult);
+    }
 
-        Mono<List<X509CRLHolder>> crlListMono = certificates.map(certs -> certs.stream().map(Certificate::getIssuerKey)
+    private Mono<CheckResult> checkWithCrls(CertificateChain chain, VerificationContext context) {
+        Set<String> authIds = chain.getCertificates().stream().map(Certificate::getIssuerKey)
             .filter(StringUtils::hasText)
-            .collect(Collectors.toList()))
-            .map(list -> {
-                list.add(BouncyCastleUtils.getAuthorityKeyIdentifier(certificateHolder));
-                return list;
-            })
-            .flatMap(authIds -> crlStorage.getAllByIssuerKeys(authIds).collectList())
-            .map(crls -> buildCrlHolderList(crls));
-
-        Mono<CertStore> certStoreMono = Mono.zip(certificates, crlListMono)
-            .map(pair -> buildCertStoreForIntermediateAndSignatureCertificate(pair.getT1(),
-                certificateHolder, pair.getT2()));
-
-        Mono<CheckResult> resultMono = Mono.zip(trustAnchorsMono, certStoreMono)
-            .map(pair -> checkCertificateChain(pair.getT1(), pair.getT2(), certificateHolder));
-
-        return resultMono;
+            .collect(Collectors.toCollection(TreeSet::new));
+        if (StringUtils.hasText(context.getAuthorityKeyIdentifier())) {
+            authIds.add(context.getAuthorityKeyIdentifier());
+        }
+
+        return crlLookupsInFlight.computeIfAbsent(authIds, this::loadCrls)
+            .publishOn(verificationScheduler)
+            .map(crls -> {
+                CheckResult checkResult = validateWithCrls(chain, buildCrlList(crls));
+                if (checkResult.getSuccess()) {
+                    rememberWithCrls(context, chain, crls);
+                }
+                return checkResult;
+            });
     }
 
-    private CheckResult checkCertificateChain(Set<TrustAnchor> trustAnchors, CertStore certStore,
-                                              X509CertificateHolder certificateHolder) {
-        CheckResult checkResult = new CheckResult();
-        checkResult.setCode(CheckResults.CHECK_CERTIFICATE_CHAIN_WITH_CRL);
-        checkResult.setDescription(CheckResults.CHECK_CERTIFICATE_CHAIN_WITH_CRL_DESCRIPTION);
-        try {
-            CertPathBuilder pathValidator = CertPathBuilder.getInstance("PKIX",
-                BouncyCastleProvider.PROVIDER_NAME);
+    private Mono<List<Crl>> loadCrls(Set<String> authIds) {
+        // убираем из crlLookupsInFlight только свой запрос: после завершения под тем же ключом мог появиться новый
+        AtomicReference<Mono<List<Crl>>> self = new AtomicReference<>();
+        Mono<List<Crl>> res = crlStorage.getAllByIssuerKeys(new ArrayList<>(authIds)).collectList()
+            .doFinally(signalType -> crlLookupsInFlight.remove(authIds, self.get()))
+            .cache();
+        self.set(res);
+        return res;
+    }
 
-            X509CertSelector targetConstraint = new X509CertSelector();
+    private void rememberWithCrls(VerificationContext context, CertificateChain chain, List<Crl> crls) {
+        Map<String, Long> crlVersions = new HashMap<>();
+        long crlNextUpdate = Long.MAX_VALUE;
+        for (Crl crl : crls) {
+            if (crl.getIssuerKey() != null && crl.getThisUpdate() != null) {
+                crlVersions.merge(crl.getIssuerKey(), crl.getThisUpdate().getTime(), Math::max);
+            }
+            if (crl.getNextUpdate() != null) {
+                crlNextUpdate = Math.min(crlNextUpdate, crl.getNextUpdate().getTime());
+            }
+        }
+        remember(context, chain, crlVersions, crlNextUpdate);
+    }
 
-            targetConstraint.setSubject(certificateHolder.getSubject().getEncoded());
+    /**
+     * Запомнить успешную проверку. Срок действия - до ближайшего nextUpdate CRL или notAfter сертификата цепочки.
+     */
+    private void remember(VerificationContext context, CertificateChain chain, Map<String, Long> crlVersions,
+                          long crlNextUpdate) {
+        long expiresAt = crlNextUpdate;
+        for (java.security.cert.Certificate pathCertificate : chain.getPath().getCertPath().getCertificates()) {
+            expiresAt = Math.min(expiresAt, ((X509Certificate) pathCertificate).getNotAfter().getTime());
+        }
+        X509Certificate anchor = chain.getPath().getTrustAnchor().getTrustedCert();
+        if (anchor != null) {
+            expiresAt = Math.min(expiresAt, anchor.getNotAfter().getTime());
+        }
+        chainValidationCache.put(context, chain, crlVersions, expiresAt);
+    }
 
-            PKIXBuilderParameters parameters = new PKIXBuilderParameters(trustAnchors, targetConstraint);
-            parameters.addCertStore(certStore);
+    /**
+     * Проверка отзыва на уже построенной цепочке: цепочка не строится заново, только проверяется с CRL.
+     */
+    private CheckResult validateWithCrls(CertificateChain chain, List<X509CRL> crls) {
+        CheckResult checkResult;
+        try {
+            PKIXParameters parameters = new PKIXParameters(chain.getTrustAnchors());
+            parameters.addCertStore(chain.getCertStore());
+            parameters.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(crls),
+                BouncyCastleProvider.PROVIDER_NAME));
             parameters.setRevocationEnabled(true);
+            // разностные CRL из набора применяются к полным спискам, к которым относятся
+            PKIXExtendedParameters extendedParameters = new PKIXExtendedParameters.Builder(parameters)
+                .setUseDeltasEnabled(true)
+                .build();
 
-            PKIXCertPathBuilderResult res = (PKIXCertPathBuilderResult) pathValidator.build(parameters);
+            CertPathValidator.getInstance("PKIX", BouncyCastleProvider.PROVIDER_NAME)
+                .validate(chain.getPath().getCertPath(), extendedParameters);
 
-            checkResult.setCreatedAt(new Date());
-            checkResult.setResultDescription(CERTIFICATE_CHAIN_VALID);
-            checkResult.setSuccess(true);
+            checkResult = buildCheckResult(true, CERTIFICATE_CHAIN_VALID);
         } catch (Exception ex) {
             log.warn("", ex);
-            checkResult.setSuccess(false);
-            checkResult.setCreatedAt(new Date());
-            checkResult.setResultDescription(getReadableErrorMessage(ex));
+            checkResult = buildCheckResult(false, getReadableErrorMessage(ex));
         }
-
         return checkResult;
     }
 
-    private Set<TrustAnchor> buildTrustAnchors(List<Certificate> certificates) {
-        Set<TrustAnchor> anchors = new HashSet<>();
-        for (Certificate certificate : certificates) {
-            if (certificate.isTrusted()) {
-                try {
-                    X509Certificate cert = (X509Certificate) certificateFactory
-                        .generateCertificate(new ByteArrayInputStream(certificate.getPemData().getBytes()));
-                    TrustAnchor trustAnchor = new TrustAnchor(cert, null);
-                    anchors.add(trustAnchor);
-                } catch (Exception ex) {
-                    log.warn("", ex);
-                }
-            }
-        }
-        return anchors;
+    private static CheckResult buildCheckResult(boolean success, String resultDescription) {
+        CheckResult checkResult = new CheckResult();
+        checkResult.setCode(CheckResults.CHECK_CERTIFICATE_CHAIN_WITH_CRL);
+        checkResult.setDescription(CheckResults.CHECK_CERTIFICATE_CHAIN_WITH_CRL_DESCRIPTION);
+        checkResult.setCreatedAt(new Date());
+        checkResult.setResultDescription(resultDescription);
+        checkResult.setSuccess(success);
+        return checkResult;
     }
 
-    private List<X509CRLHolder> buildCrlHolderList(List<Crl> crls) {
-        List<X509CRLHolder> res = new ArrayList<>();
+    private List<X509CRL> buildCrlList(List<Crl> crls) {
+        List<X509CRL> res = new ArrayList<>();
         for (Crl crl : crls) {
             try {
-                X509CRL x509CRL = (X509CRL) certificateFactory.generateCRL(new ByteArrayInputStream(crl.getPemData()
-                    .getBytes()));
-                res.add(new X509CRLHolder(x509CRL.getEncoded()));
+                res.add(crlCache.get(crl));
             } catch (Exception ex) {
                 log.warn("", ex);
             }
@@ -163,46 +253,31 @@ public class CertificateChainCrlCheck implements Check {
         return res;
     }
 
-    private CertStore buildCertStoreForIntermediateAndSignatureCertificate(List<Certificate> certificates,
-                                                                           X509CertificateHolder signatureCertificate,
-                                                                           List<X509CRLHolder> crls) {
-        JcaCertStoreBuilder jcaCertStoreBuilder = new JcaCertStoreBuilder();
-        jcaCertStoreBuilder.addCertificate(signatureCertificate);
-        CertStore certStore = null;
-        for (Certificate certificate : certificates) {
-            if (!certificate.isTrusted()) {
-                try {
-                    X509Certificate cert = (X509Certificate) certificateFactory
-                        .generateCertificate(new ByteArrayInputStream(certificate.getPemData().getBytes()));
-                    jcaCertStoreBuilder.addCertificate(new X509CertificateHolder(cert.getEncoded()));
-                } catch (Exception ex) {
-                    log.warn("", ex);
-                }
-            }
-        }
-
-        Optional.ofNullable(crls).orElse(Collections.emptyList())
-            .forEach(x509CRLHolder -> jcaCertStoreBuilder.addCRL(x509CRLHolder));
-
+    private static String getAuthorityKeyIdentifier(X509Certificate certificate) {
+        String res = null;
         try {
-            certStore = jcaCertStoreBuilder.build();
-        } catch (Exception e) {
-            log.warn("", e);
+            res = BouncyCastleUtils.getAuthorityKeyIdentifier(certificate);
+        } catch (Exception ex) {
+            log.warn("", ex);
         }
-        return certStore;
+        return res;
     }
 
+    /**
+     * Ошибка построения цепочки приходит обернутой в CertPathBuilderException, ошибка проверки -
+     * в CertPathValidatorException, поэтому причину ищем по всей цепочке исключений.
+     */
     private static String getReadableErrorMessage(Exception ex) {
-        String res;
-        Throwable cause = GetterUtils.get(() -> ex.getCause().getCause(), new CertificateException());
-        if (cause instanceof CertificateExpiredException) {
-            res = Messages.getMessage(Messages.CERTIFICATE_EXPIRED);
-        } else if (cause instanceof CertificateNotYetValidException) {
-            res = Messages.getMessage(Messages.CERTIFICATE_NOT_YET_VALID);
-        } else if (cause instanceof CertificateRevokedException) {
-            res = Messages.getMessage(Messages.CERTIFICATE_REVOKED);
-        } else {
-            res = CERTIFICATE_CHAIN_INVALID;
+        String res = CERTIFICATE_CHAIN_INVALID;
+        for (Throwable cause = ex; cause != null && CERTIFICATE_CHAIN_INVALID.equals(res); cause = cause.getCause()) {
+            if (cause instanceof CertificateExpiredException) {
+                res = Messages.getMessage(Messages.CERTIFICATE_EXPIRED);
+            } else if (cause instanceof CertificateNotYetValidException) {
+                res = Messages.getMessage(Messages.CERTIFICATE_NOT_YET_VALID);
+            } else if (cause instanceof CertificateRevokedException || (cause instanceof CertPathValidatorException &&
+                ((CertPathValidatorException) cause).getReason() == CertPathValidatorException.BasicReason.REVOKED)) {
+                res = Messages.getMessage(Messages.CERTIFICATE_REVOKED);
+            }
         }
         return res;
     }
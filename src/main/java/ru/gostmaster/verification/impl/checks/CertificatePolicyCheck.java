@@ -1,22 +1,16 @@
 package ru.gostmaster.verification.impl.checks;
 
 import com.google.common.collect.ImmutableSet;
-import org.bouncycastle.asn1.x509.CertificatePolicies;
-import org.bouncycastle.asn1.x509.PolicyInformation;
-import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cms.SignerInformation;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 import ru.gostmaster.dictionary.CertificatePoliciesName;
 import ru.gostmaster.verification.Check;
+import ru.gostmaster.verification.VerificationContext;
 import ru.gostmaster.verification.data.CheckResult;
 import ru.gostmaster.verification.data.CheckResults;
 
 import java.util.Date;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Проверка Certificate Policy и класса использования сертификата.
@@ -60,16 +54,11 @@ public class CertificatePolicyCheck implements Check {
         "Не удалось подтвердить класс средства. Обратите внимание на раздел certificatePolicies";
     
     @Override
-    public Mono<CheckResult> verify(SignerInformation signerInformation, X509CertificateHolder certificateHolder) {
+    public Mono<CheckResult> verify(VerificationContext context) {
         boolean res;
         String message;
             
-        CertificatePolicies policies = CertificatePolicies.fromExtensions(certificateHolder.getExtensions());
-        Set<String> oids = Stream.of(policies.getPolicyInformation())
-            .map(PolicyInformation::getPolicyIdentifier)
-            .filter(Objects::nonNull)
-            .map(String::valueOf)
-            .collect(Collectors.toSet());
+        Set<String> oids = context.getCertificatePolicyOids();
         
         if (oids.contains(KA1_POLICIES)) {
             res = true;
@@ -1,13 +1,12 @@
 package ru.gostmaster.verification.impl.checks;
 
 import lombok.extern.slf4j.Slf4j;
-import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cms.SignerInformation;
 import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 import ru.gostmaster.messages.Messages;
 import ru.gostmaster.verification.Check;
+import ru.gostmaster.verification.VerificationContext;
 import ru.gostmaster.verification.data.CheckResult;
 import ru.gostmaster.verification.data.CheckResults;
 
@@ -23,15 +22,15 @@ import java.util.Date;
 public class CheckContentCheck implements Check {
     
     @Override
-    public Mono<CheckResult> verify(SignerInformation signerInformation, X509CertificateHolder certificateHolder) {
+    public Mono<CheckResult> verify(VerificationContext context) {
         CheckResult checkResult = new CheckResult();
         checkResult.setCode(CheckResults.CHECK_SIGN_CONTENT);
         checkResult.setDescription(CheckResults.CHECK_SIGN_CONTENT_DESCRIPTION);
         boolean res;
         String message;
         try {
-            res = signerInformation.verify(new JcaSimpleSignerInfoVerifierBuilder()
-                .build(certificateHolder));
+            res = context.getSignerInformation().verify(new JcaSimpleSignerInfoVerifierBuilder()
+                .build(context.getCertificate()));
             if (res) {
                 message = Messages.getMessage(Messages.VALID_SIGNED_CONTENT);
             } else {
@@ -1,11 +1,10 @@
 package ru.gostmaster.verification.impl.checks;
 
 import org.bouncycastle.asn1.x509.KeyUsage;
-import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cms.SignerInformation;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 import ru.gostmaster.verification.Check;
+import ru.gostmaster.verification.VerificationContext;
 import ru.gostmaster.verification.data.CheckResult;
 import ru.gostmaster.verification.data.CheckResults;
 
@@ -20,8 +19,8 @@ import java.util.Date;
 public class KeyUsageCheck implements Check {
     
     @Override
-    public Mono<CheckResult> verify(SignerInformation signerInformation, X509CertificateHolder certificateHolder) {
-        KeyUsage keyUsage = KeyUsage.fromExtensions(certificateHolder.getExtensions());
+    public Mono<CheckResult> verify(VerificationContext context) {
+        KeyUsage keyUsage = context.getKeyUsage();
         boolean signature = keyUsage.hasUsages(KeyUsage.digitalSignature);
         boolean nonRepudiation = keyUsage.hasUsages(KeyUsage.nonRepudiation);
         boolean keyEncipherment = keyUsage.hasUsages(KeyUsage.keyEncipherment);
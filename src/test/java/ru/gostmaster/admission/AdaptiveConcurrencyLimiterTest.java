@@ -0,0 +1,194 @@
+package ru.gostmaster.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты адаптивного ограничителя: подстройка лимита, отказы при заполненной очереди и по времени ожидания,
+ * возврат разрешений при отмене ожидания.
+ *
+ * @author maksimgurin
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final Duration VERIFY_TIMEOUT = Duration.ofSeconds(5);
+    private static final long FAST_RTT = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW_RTT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void limitGrowsWhileLatencyStaysLow() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 1, 10, 16, 1000);
+
+        for (int round = 0; round < 10; round++) {
+            // лимит растет, только если он используется полностью
+            List<AdmissionPermit> permits = acquire(limiter, limiter.getLimit());
+            permits.forEach(permit -> limiter.release(System.nanoTime() - FAST_RTT, true));
+        }
+
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void limitDoesNotGrowWhenUnused() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 1, 16, 16, 1000);
+
+        for (int i = 0; i < 20; i++) {
+            acquire(limiter, 1);
+            limiter.release(System.nanoTime() - FAST_RTT, true);
+        }
+
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void limitShrinksWhenLatencyGrows() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 8, 10, 16, 1000);
+        // минимальное время выполнения без нагрузки
+        acquire(limiter, 1);
+        limiter.release(System.nanoTime() - FAST_RTT, true);
+
+        for (int i = 0; i < 5; i++) {
+            acquire(limiter, 1);
+            limiter.release(System.nanoTime() - SLOW_RTT, true);
+        }
+
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void failedRequestsDoNotChangeLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 1, 10, 16, 1000);
+        acquire(limiter, 1);
+        limiter.release(System.nanoTime() - FAST_RTT, true);
+
+        for (int i = 0; i < 5; i++) {
+            acquire(limiter, 1);
+            limiter.release(System.nanoTime() - SLOW_RTT, false);
+        }
+
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void permitSamplesOnlyStartedWork() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 1, 10, 16, 1000);
+
+        // проверка не началась (например, клиент не догрузил файл) - лимит не меняется
+        acquire(limiter, limiter.getLimit()).forEach(permit -> permit.release(true));
+        assertEquals(4, limiter.getLimit());
+
+        acquire(limiter, limiter.getLimit()).forEach(permit -> {
+            permit.startWork();
+            permit.release(true);
+        });
+        assertTrue(limiter.getLimit() > 4);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 1, 1, 10_000);
+        AdmissionPermit held = acquire(limiter, 1).get(0);
+        Disposable queued = limiter.acquire().subscribe();
+
+        StepVerifier.create(limiter.acquire())
+            .expectError(AdmissionRejectedException.class)
+            .verify(VERIFY_TIMEOUT);
+
+        assertEquals(1, limiter.getQueueDepth());
+        assertEquals(1.0, meterRegistry.counter("verification.limiter.rejected", "reason", "queue-full").count());
+        queued.dispose();
+        held.release(true);
+    }
+
+    @Test
+    void rejectsWhenQueueTimeoutExpires() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 1, 4, 50);
+        AdmissionPermit held = acquire(limiter, 1).get(0);
+
+        StepVerifier.create(limiter.acquire())
+            .expectError(AdmissionRejectedException.class)
+            .verify(VERIFY_TIMEOUT);
+
+        assertEquals(0, limiter.getQueueDepth());
+        assertEquals(1.0, meterRegistry.counter("verification.limiter.rejected", "reason", "queue-timeout").count());
+        held.release(true);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void grantsQueuedRequestOnRelease() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 1, 4, 10_000);
+        AdmissionPermit held = acquire(limiter, 1).get(0);
+
+        StepVerifier.create(limiter.acquire())
+            .then(() -> held.release(true))
+            .assertNext(permit -> permit.release(true))
+            .expectComplete()
+            .verify(VERIFY_TIMEOUT);
+
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueDepth());
+    }
+
+    @Test
+    void cancelledWaiterLeavesQueueWithoutPermit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 1, 4, 10_000);
+        AdmissionPermit held = acquire(limiter, 1).get(0);
+        Disposable queued = limiter.acquire().subscribe();
+        assertEquals(1, limiter.getQueueDepth());
+
+        queued.dispose();
+        held.release(true);
+
+        assertEquals(0, limiter.getQueueDepth());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void cancelledWaitersDoNotLeakPermitsUnderContention() {
+        // короткое ожидание: отмена по времени часто совпадает с выдачей разрешения
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 2, 2, 1000, 1);
+
+        Flux.range(0, 2000)
+            .flatMap(i -> limiter.acquire()
+                .subscribeOn(Schedulers.parallel())
+                .flatMap(permit -> Mono.delay(Duration.ofMillis(1)).doFinally(signalType -> permit.release(true)))
+                .onErrorResume(AdmissionRejectedException.class, ex -> Mono.empty()), 64)
+            .blockLast(VERIFY_TIMEOUT);
+
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueDepth());
+        assertTrue(meterRegistry.counter("verification.limiter.rejected", "reason", "queue-timeout").count() > 0);
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit, int minLimit, int maxLimit, int queueSize,
+                                               long queueTimeoutMs) {
+        return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, queueSize, queueTimeoutMs, meterRegistry);
+    }
+
+    private static List<AdmissionPermit> acquire(AdaptiveConcurrencyLimiter limiter, int count) {
+        List<AdmissionPermit> res = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            res.add(limiter.acquire().block(VERIFY_TIMEOUT));
+        }
+        return res;
+    }
+}
@@ -0,0 +1,258 @@
+package ru.gostmaster.revocation;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.cert.X509CRL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты индекса отозванных сертификатов на списках, подписанных тестовым ключом.
+ *
+ * @author maksimgurin
+ */
+class RevocationIndexTest {
+
+    private static final long BASE_MILLIS = 1_600_000_000_000L;
+    private static final Date THIS_UPDATE = new Date(BASE_MILLIS);
+    private static final Date NEXT_UPDATE = new Date(BASE_MILLIS + 86_400_000L);
+    private static final BigInteger DATE_SPREAD = BigInteger.valueOf(1_000_000L);
+
+    private static KeyPair keyPair;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        keyPair = generator.generateKeyPair();
+    }
+
+    @Test
+    void readsBackIndexFromBuffer() throws Exception {
+        List<BigInteger> serials = serials(100, 7, 3);
+        RevocationIndex built = RevocationIndex.build(crl(serials));
+
+        RevocationIndex read = RevocationIndex.read(built.getBuffer());
+
+        assertEquals(serials.size(), read.size());
+        assertEquals(THIS_UPDATE.getTime(), read.getThisUpdate());
+        assertEquals(NEXT_UPDATE.getTime(), read.getNextUpdate());
+        assertAllRevoked(read, serials);
+        assertEquals(RevocationIndex.NOT_REVOKED, read.getRevocationDate(BigInteger.valueOf(8)));
+    }
+
+    @Test
+    void readsBackIndexFromMappedFile(@TempDir Path directory) throws Exception {
+        List<BigInteger> serials = serials(50, 1000, 17);
+        RevocationIndexFiles files = new RevocationIndexFiles(directory.toString());
+
+        RevocationIndex written = files.write("issuer-key", RevocationIndex.build(crl(serials)));
+        Map<String, RevocationIndex> reread = files.readAll();
+
+        assertTrue(written.getBuffer() instanceof MappedByteBuffer);
+        assertEquals(Collections.singleton("issuer-key"), reread.keySet());
+        for (RevocationIndex index : Arrays.asList(written, reread.get("issuer-key"))) {
+            assertEquals(serials.size(), index.size());
+            assertEquals(NEXT_UPDATE.getTime(), index.getNextUpdate());
+            assertAllRevoked(index, serials);
+            assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(BigInteger.valueOf(1001)));
+        }
+    }
+
+    @Test
+    void keepsOnlyNewestIndexFile(@TempDir Path directory) throws Exception {
+        RevocationIndexFiles files = new RevocationIndexFiles(directory.toString());
+        Date laterThisUpdate = new Date(BASE_MILLIS + 3_600_000L);
+        List<BigInteger> serials = serials(10, 1, 1);
+        RevocationIndex older = files.write("issuer-key", RevocationIndex.build(crl(serials)));
+        RevocationIndex newer = files.write("issuer-key",
+            RevocationIndex.build(crl(laterThisUpdate, NEXT_UPDATE, serials, Collections.emptyList(), false)));
+        assertEquals(2, countFiles(directory));
+
+        // при старте из нескольких файлов издателя остается самый новый
+        RevocationIndex reread = new RevocationIndexFiles(directory.toString()).readAll().get("issuer-key");
+        assertEquals(laterThisUpdate.getTime(), reread.getThisUpdate());
+        assertEquals(1, countFiles(directory));
+
+        // вытесненный индекс продолжает читаться из отображения после удаления файла
+        files.delete(older);
+        assertAllRevoked(older, serials);
+        assertAllRevoked(newer, serials);
+    }
+
+    @Test
+    void findsSerialsAroundBlockBoundaries() throws Exception {
+        // три полных блока и одна запись в четвертом
+        int count = 3 * RevocationIndex.BLOCK_SIZE + 1;
+        List<BigInteger> serials = serials(count, 10, 10);
+        RevocationIndex index = RevocationIndex.build(crl(serials));
+
+        for (int i = 0; i < count; i++) {
+            BigInteger serial = serials.get(i);
+            assertEquals(revocationDate(serial), index.getRevocationDate(serial), "запись " + i);
+            assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(serial.subtract(BigInteger.ONE)), "перед " + i);
+            assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(serial.add(BigInteger.ONE)), "после " + i);
+        }
+    }
+
+    @Test
+    void findsSerialsOfMixedWidth() throws Exception {
+        List<BigInteger> serials = new ArrayList<>();
+        serials.add(BigInteger.ONE);
+        serials.add(BigInteger.valueOf(0x7F));
+        // старший бит установлен: toByteArray() дает ведущий ноль
+        serials.add(BigInteger.valueOf(0x80));
+        serials.add(BigInteger.valueOf(0x0100));
+        serials.add(BigInteger.valueOf(0x0102));
+        serials.add(BigInteger.valueOf(0x010203));
+        serials.add(BigInteger.valueOf(0xFF00));
+        serials.add(new BigInteger("00ff00000000000000000000000000000000000001", 16));
+        serials.add(new BigInteger("80000000000000000000000000000000000000", 16));
+        serials.add(new BigInteger("7fffffffffffffffffffffffffffffffffffffff", 16));
+        RevocationIndex index = RevocationIndex.build(crl(serials));
+
+        assertEquals(serials.size(), index.size());
+        assertAllRevoked(index, serials);
+        // общий префикс с хранимыми номерами, но другой номер
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(BigInteger.valueOf(0x01000000)));
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(BigInteger.valueOf(0x0101)));
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(BigInteger.valueOf(0x010202)));
+    }
+
+    @Test
+    void acceptsSerialsWithLeadingZeros() throws Exception {
+        List<BigInteger> serials = Arrays.asList(BigInteger.ONE, BigInteger.valueOf(0x80), BigInteger.valueOf(0xABCDEF));
+        RevocationIndex index = RevocationIndex.build(crl(serials));
+
+        assertEquals(revocationDate(BigInteger.ONE), index.getRevocationDate(new byte[] {0, 0, 0, 0, 1}));
+        assertEquals(revocationDate(BigInteger.valueOf(0x80)), index.getRevocationDate(new byte[] {(byte) 0x80}));
+        assertEquals(revocationDate(BigInteger.valueOf(0x80)), index.getRevocationDate(new byte[] {0, (byte) 0x80}));
+        assertEquals(revocationDate(BigInteger.valueOf(0xABCDEF)),
+            index.getRevocationDate(new byte[] {0, 0, 0, 0, 0, 0, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF}));
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(new byte[] {0, 0, 0, 0}));
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(new byte[] {1, 0, 0, 0, 1}));
+    }
+
+    @Test
+    void doesNotFindAbsentSerials() throws Exception {
+        List<BigInteger> serials = serials(40, 1000, 100);
+        RevocationIndex index = RevocationIndex.build(crl(serials));
+
+        // ниже диапазона, между записями, выше диапазона и длиннее самого длинного номера
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(BigInteger.ONE));
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(BigInteger.valueOf(999)));
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(BigInteger.valueOf(1050)));
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(BigInteger.valueOf(2599)));
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(BigInteger.valueOf(4901)));
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(BigInteger.ONE.shiftLeft(200)));
+    }
+
+    @Test
+    void emptyCrlRevokesNothing() throws Exception {
+        RevocationIndex index = RevocationIndex.build(crl(Collections.emptyList()));
+
+        assertEquals(0, index.size());
+        assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(BigInteger.ONE));
+        assertEquals(RevocationIndex.NOT_REVOKED, RevocationIndex.read(index.getBuffer()).getRevocationDate(BigInteger.TEN));
+    }
+
+    @Test
+    void mergesDeltaCrl() throws Exception {
+        List<BigInteger> base = serials(40, 1, 1);
+        Date deltaThisUpdate = new Date(BASE_MILLIS + 3_600_000L);
+        Date deltaNextUpdate = new Date(BASE_MILLIS + 7_200_000L);
+        List<BigInteger> added = Arrays.asList(BigInteger.valueOf(100), BigInteger.valueOf(101));
+        // 17 - первая запись второго блока полного списка, 500 в полном списке нет
+        List<BigInteger> removed = Arrays.asList(BigInteger.valueOf(5), BigInteger.valueOf(17), BigInteger.valueOf(500));
+        X509CRL delta = crl(deltaThisUpdate, deltaNextUpdate, added, removed, true);
+
+        RevocationIndex index = RevocationIndex.build(crl(base), delta);
+
+        assertEquals(base.size() - 2 + added.size(), index.size());
+        assertEquals(deltaThisUpdate.getTime(), index.getThisUpdate());
+        assertEquals(deltaNextUpdate.getTime(), index.getNextUpdate());
+        assertAllRevoked(index, added);
+        for (BigInteger serial : removed) {
+            assertEquals(RevocationIndex.NOT_REVOKED, index.getRevocationDate(serial), serial.toString());
+        }
+        for (BigInteger serial : base) {
+            if (!removed.contains(serial)) {
+                assertEquals(revocationDate(serial), index.getRevocationDate(serial), serial.toString());
+            }
+        }
+    }
+
+    private static void assertAllRevoked(RevocationIndex index, List<BigInteger> serials) {
+        for (BigInteger serial : serials) {
+            assertEquals(revocationDate(serial), index.getRevocationDate(serial), serial.toString(16));
+        }
+    }
+
+    private static long countFiles(Path directory) throws IOException {
+        try (Stream<Path> stream = Files.list(directory)) {
+            return stream.count();
+        }
+    }
+
+    private static List<BigInteger> serials(int count, long first, long step) {
+        List<BigInteger> res = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            res.add(BigInteger.valueOf(first + i * step));
+        }
+        return res;
+    }
+
+    // у каждого номера своя дата отзыва (с точностью до секунды, как в CRL)
+    private static long revocationDate(BigInteger serial) {
+        return BASE_MILLIS - serial.mod(DATE_SPREAD).longValue() * 1000L;
+    }
+
+    private static X509CRL crl(List<BigInteger> serials) throws Exception {
+        return crl(THIS_UPDATE, NEXT_UPDATE, serials, Collections.emptyList(), false);
+    }
+
+    private static X509CRL crl(Date thisUpdate, Date nextUpdate, List<BigInteger> serials, List<BigInteger> removed,
+                               boolean delta) throws Exception {
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(new X500Name("CN=Test CA"), thisUpdate);
+        builder.setNextUpdate(nextUpdate);
+        builder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(delta ? 2 : 1)));
+        if (delta) {
+            builder.addExtension(Extension.deltaCRLIndicator, true, new CRLNumber(BigInteger.ONE));
+        }
+        for (BigInteger serial : serials) {
+            builder.addCRLEntry(serial, new Date(revocationDate(serial)), CRLReason.keyCompromise);
+        }
+        for (BigInteger serial : removed) {
+            builder.addCRLEntry(serial, thisUpdate, CRLReason.removeFromCRL);
+        }
+        return new JcaX509CRLConverter().setProvider(BouncyCastleProvider.PROVIDER_NAME)
+            .getCRL(builder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(keyPair.getPrivate())));
+    }
+}